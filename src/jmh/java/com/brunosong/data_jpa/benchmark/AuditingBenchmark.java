@@ -0,0 +1,102 @@
+package com.brunosong.data_jpa.benchmark;
+
+import com.brunosong.data_jpa.dto.MemberImportDto;
+import com.brunosong.data_jpa.entity.AuditListener;
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.service.MemberBulkImportService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.auditing.AuditingHandler;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.jpa.mapping.JpaMetamodelMappingContext;
+import org.springframework.data.mapping.context.PersistentEntities;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* 엔티티 한건당 감사(audit) 비용. 점수는 모두 엔티티 1건 기준이다. (@OperationsPerInvocation)
+ *
+ *   springDataAuditingHandler : 예전 AuditingEntityListener 가 쓰던 AuditingHandler (리플렉션 + 매번 시계/작성자 조회)
+ *   auditListener             : AuditListener (트랜잭션당 시계/작성자 한번, 필드 직접 대입)
+ *   bulkInsert                : 벌크 등록 전체 (insert 포함) 에서 엔티티 한건당 비용. 반복(iteration) 마다 넣은 회원은 지운다.
+ *
+ *   ./gradlew jmh -Pjmh.includes=AuditingBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuditingBenchmark {
+
+    static final int ENTITIES = 1000;
+
+    ConfigurableApplicationContext context;
+    AuditingHandler auditingHandler;
+    AuditListener auditListener;
+    MemberBulkImportService memberBulkImportService;
+    MemberRepository memberRepository;
+    TransactionTemplate tx;
+    List<MemberImportDto> rows;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        context = BenchmarkContext.start();
+
+        auditingHandler = new AuditingHandler(PersistentEntities.of(context.getBean(JpaMetamodelMappingContext.class)));
+        auditingHandler.setAuditorAware(context.getBean(AuditorAware.class));
+        auditListener = context.getAutowireCapableBeanFactory().createBean(AuditListener.class);
+
+        memberBulkImportService = context.getBean(MemberBulkImportService.class);
+        memberRepository = context.getBean(MemberRepository.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        rows = new ArrayList<>(ENTITIES);
+        for (int i = 0; i < ENTITIES; i++) {
+            rows.add(new MemberImportDto("audit" + i, i, null));
+        }
+    }
+
+    // 계속 쌓이면 뒤로 갈수록 인덱스 / 테이블이 커져서 bulkInsert 점수가 나빠진다.
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        memberRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITIES)
+    public void springDataAuditingHandler(Blackhole bh) {
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < ENTITIES; i++) {
+                bh.consume(auditingHandler.markCreated(new Member("audit" + i, i)));
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITIES)
+    public void auditListener(Blackhole bh) {
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < ENTITIES; i++) {
+                Member member = new Member("audit" + i, i);
+                auditListener.prePersist(member);
+                bh.consume(member);
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITIES)
+    public void bulkInsert(Blackhole bh) {
+        bh.consume(memberBulkImportService.importMembers(rows));
+    }
+}
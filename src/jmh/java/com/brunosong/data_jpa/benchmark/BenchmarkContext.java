@@ -0,0 +1,66 @@
+package com.brunosong.data_jpa.benchmark;
+
+import com.brunosong.data_jpa.DataJpaApplication;
+import com.brunosong.data_jpa.dto.MemberImportDto;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.repository.TeamRepository;
+import com.brunosong.data_jpa.service.MemberBulkImportService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/* 벤치마크용 스프링 컨텍스트. 웹 서버 없이 JPA 만 메모리 H2 로 띄운다.
+ * 2차 캐시, 통계, SQL 로그는 측정값을 흐리기 때문에 기본으로 끈다. 필요하면 properties 로 덮어쓴다.
+ * */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        Map<String, Object> defaults = new LinkedHashMap<>();
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        defaults.put("spring.jpa.properties.hibernate.show_sql", "false");
+        defaults.put("spring.jpa.properties.hibernate.format_sql", "false");
+        defaults.put("spring.jpa.properties.hibernate.cache.use_second_level_cache", "false");
+        defaults.put("spring.jpa.properties.hibernate.cache.use_query_cache", "false");
+        defaults.put("spring.jpa.properties.hibernate.generate_statistics", "false");
+        defaults.put("decorator.datasource.enabled", "false");
+        defaults.put("logging.level.root", "warn");
+        defaults.put("logging.level.org.hibernate.sql", "warn");
+        defaults.put("logging.level.org.hibernate.type", "warn");
+        defaults.put("logging.level.org.hibernate.engine.jdbc.batch.internal.BatchingBatch", "off");   // 낙관적 락 충돌마다 찍히는 ERROR 로그
+
+        // application.yml 보다 우선해야 해서 커맨드라인 인자로 넘긴다. (builder.properties 는 가장 낮은 우선순위)
+        List<String> args = new ArrayList<>();
+        defaults.forEach((key, value) -> args.add("--" + key + "=" + value));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+
+        return new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+    }
+
+    /* teams 개의 팀에 팀마다 membersPerTeam 명씩. username 은 member0 ~ member{membersPerTeam-1} 이 팀마다 반복된다.
+       MemberController.init 이 넣는 기본 회원(팀 없음)은 지우고 시작한다. */
+    public static void seed(ConfigurableApplicationContext context, int teams, int membersPerTeam) {
+        context.getBean(MemberRepository.class).deleteAllInBatch();
+        context.getBean(TeamRepository.class).deleteAllInBatch();
+
+        List<MemberImportDto> rows = new ArrayList<>(teams * membersPerTeam);
+        for (int t = 0; t < teams; t++) {
+            for (int m = 0; m < membersPerTeam; m++) {
+                rows.add(new MemberImportDto("member" + m, m, "team" + t));
+            }
+        }
+        context.getBean(MemberBulkImportService.class).importMembers(rows);
+    }
+}
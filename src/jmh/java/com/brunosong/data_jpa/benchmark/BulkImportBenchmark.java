@@ -0,0 +1,89 @@
+package com.brunosong.data_jpa.benchmark;
+
+import com.brunosong.data_jpa.dto.MemberImportDto;
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.entity.Team;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.repository.TeamRepository;
+import com.brunosong.data_jpa.service.MemberBulkImportService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* 대량 등록 (MemberBulkImportService) 과 한건씩 save 하는 방식 비교. 점수는 회원 1건 기준이다. (@OperationsPerInvocation)
+ *
+ *   saveEach    : 한건마다 트랜잭션 하나. 팀을 이름으로 찾고 회원을 save (예전 방식)
+ *   importBulk  : 한 트랜잭션에서 시퀀스 블록 + jdbc batch + flush/clear
+ *
+ * 목표는 importBulk 가 saveEach 보다 10배 이상 빠른 것. 메모리 H2 는 왕복 비용이 거의 없어서 실제 DB 보다 차이가 작게 나온다.
+ * 반복(iteration) 마다 넣은 회원은 지운다.
+ *
+ *   ./gradlew jmh -Pjmh.includes=BulkImportBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BulkImportBenchmark {
+
+    static final int ROWS = 1000;
+    static final int TEAMS = 10;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TeamRepository teamRepository;
+    MemberBulkImportService memberBulkImportService;
+    TransactionTemplate tx;
+    List<MemberImportDto> rows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        memberRepository = context.getBean(MemberRepository.class);
+        teamRepository = context.getBean(TeamRepository.class);
+        memberBulkImportService = context.getBean(MemberBulkImportService.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        memberRepository.deleteAllInBatch();
+        for (int t = 0; t < TEAMS; t++) {
+            teamRepository.save(new Team("importTeam" + t));
+        }
+
+        rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new MemberImportDto("import" + i, i, "importTeam" + (i % TEAMS)));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        memberRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void saveEach(Blackhole bh) {
+        for (MemberImportDto row : rows) {
+            bh.consume(tx.execute(status -> {
+                Team team = teamRepository.findFirstByName(row.getTeamName()).orElse(null);
+                return memberRepository.save(new Member(row.getUsername(), row.getAge(), team));
+            }));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void importBulk(Blackhole bh) {
+        bh.consume(memberBulkImportService.importMembers(rows));
+    }
+}
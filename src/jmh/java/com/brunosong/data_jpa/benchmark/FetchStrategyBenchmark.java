@@ -0,0 +1,98 @@
+package com.brunosong.data_jpa.benchmark;
+
+import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* MemberRepository 에서 회원 + 팀 이름을 읽는 방법별 비용 비교.
+ * 매번 새 트랜잭션(= 새 영속성 컨텍스트)에서 읽고, 팀 이름까지 건드려서 지연로딩 비용도 포함시킨다.
+ *
+ *   ./gradlew jmh -Pjmh.includes=FetchStrategyBenchmark
+ *
+ * batchFetchSize 0 은 hibernate.default_batch_fetch_size 를 안 쓴 경우 (지연로딩이 팀 수만큼 나간다).
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FetchStrategyBenchmark {
+
+    @Param({"10", "100"})
+    int teams;
+
+    @Param({"10", "100"})
+    int membersPerTeam;
+
+    @Param({"0", "100"})
+    int batchFetchSize;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TransactionTemplate tx;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("spring.jpa.properties.hibernate.default_batch_fetch_size=" + batchFetchSize);
+        BenchmarkContext.seed(context, teams, membersPerTeam);
+
+        memberRepository = context.getBean(MemberRepository.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        tx.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void lazyLoading(Blackhole bh) {
+        tx.executeWithoutResult(status -> consume(memberRepository.findMemberCustom(), bh));
+    }
+
+    @Benchmark
+    public void fetchJoin(Blackhole bh) {
+        tx.executeWithoutResult(status -> consume(memberRepository.findMemberFetchJoin(), bh));
+    }
+
+    @Benchmark
+    public void entityGraphQuery(Blackhole bh) {
+        tx.executeWithoutResult(status -> consume(memberRepository.findMemberEntityGraph(), bh));
+    }
+
+    @Benchmark
+    public void findAllEntityGraph(Blackhole bh) {
+        tx.executeWithoutResult(status -> consume(memberRepository.findAll(), bh));
+    }
+
+    // Member.all 그래프. username 이 같은 회원이 팀마다 한명씩이라 결과는 teams 건이다.
+    @Benchmark
+    public void namedEntityGraph(Blackhole bh) {
+        tx.executeWithoutResult(status -> consume(memberRepository.findEntityGraphByUsername("member0"), bh));
+    }
+
+    // findMemberDto 는 inner join 이라 팀 없는 회원은 빠진다. (시드 데이터는 전부 팀이 있다)
+    @Benchmark
+    public void dtoProjection(Blackhole bh) {
+        tx.executeWithoutResult(status -> {
+            for (MemberDto dto : memberRepository.findMemberDto()) {
+                bh.consume(dto.getUsername());
+                bh.consume(dto.getTeamName());
+            }
+        });
+    }
+
+    private static void consume(List<Member> members, Blackhole bh) {
+        for (Member member : members) {
+            bh.consume(member.getUsername());
+            bh.consume(member.getTeam().getName());
+        }
+    }
+}
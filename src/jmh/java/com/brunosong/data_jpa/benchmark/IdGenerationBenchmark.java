@@ -0,0 +1,62 @@
+package com.brunosong.data_jpa.benchmark;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* member_seq 블록 크기 / 미리 받기 (ConfigurableSequenceGenerator) 에 따른 insert 처리량.
+ *
+ *   allocationSize : 1 이면 insert 마다 시퀀스 조회, 100 이면 100건마다 한번 (지금 설정)
+ *   prefetch       : false 가 지금까지의 매핑, true 면 다음 블록을 백그라운드에서 미리 받아둔다.
+ *
+ * 한번 호출에 회원 50명을 한 트랜잭션으로 넣는다. 스레드 수는 -Pjmh.threads 로 바꿔가면서 돌린다.
+ * 메모리 H2 는 시퀀스 조회가 거의 공짜라서 차이가 작게 나온다. 실제 DB 로 보려면 BenchmarkContext.start 에 datasource url 을 넘긴다.
+ *
+ *   ./gradlew jmh -Pjmh.includes=IdGenerationBenchmark -Pjmh.threads=1
+ *   ./gradlew jmh -Pjmh.includes=IdGenerationBenchmark -Pjmh.threads=8
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class IdGenerationBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"1", "100"})
+    int allocationSize;
+
+    @Param({"false", "true"})
+    boolean prefetch;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(
+                "spring.jpa.properties.app.id.member_seq.allocation-size=" + allocationSize,
+                "spring.jpa.properties.app.id.member_seq.prefetch=" + prefetch);
+        memberRepository = context.getBean(MemberRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)   // 결과는 회원 한명 insert 기준
+    public int insert() {
+        List<Member> members = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            members.add(new Member("idBench" + i, i));
+        }
+        return memberRepository.saveAll(members).size();
+    }
+}
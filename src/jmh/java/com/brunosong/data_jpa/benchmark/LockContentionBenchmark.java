@@ -0,0 +1,89 @@
+package com.brunosong.data_jpa.benchmark;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.service.MemberAgeService;
+import com.brunosong.data_jpa.service.OptimisticRetryTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/* 같은 행을 여러 스레드가 동시에 수정할때 낙관적 락 + 재시도 vs 비관적 락 (findLockByUsername).
+ *
+ *   hotRows : 스레드들이 나눠서 고치는 회원 수. 1 이면 모두 한 행에 몰린다.
+ *   Throughput 으로 처리량, SampleTime 으로 p99 / p99.9 같은 꼬리 지연을 본다.
+ *   재시도를 다 써도 실패한 건 exhausted 로 마지막에 찍는다. (실패도 한번의 호출로 센다)
+ *
+ * 스레드 수는 -Pjmh.threads 로 바꿔가면서 돌린다. 커넥션 풀(기본 10) 보다 많으면 커넥션 대기도 같이 잡힌다.
+ *
+ *   ./gradlew jmh -Pjmh.includes=LockContentionBenchmark -Pjmh.threads=1
+ *   ./gradlew jmh -Pjmh.includes=LockContentionBenchmark -Pjmh.threads=4
+ *   ./gradlew jmh -Pjmh.includes=LockContentionBenchmark -Pjmh.threads=16
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class LockContentionBenchmark {
+
+    @Param({"1", "16"})
+    int hotRows;
+
+    ConfigurableApplicationContext context;
+    MemberAgeService memberAgeService;
+    OptimisticRetryTemplate optimisticRetryTemplate;
+    String[] usernames;
+    long retriesBefore;
+    long exhaustedBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        MemberRepository memberRepository = context.getBean(MemberRepository.class);
+        memberRepository.deleteAllInBatch();
+
+        List<Member> members = new ArrayList<>();
+        usernames = new String[hotRows];
+        for (int i = 0; i < hotRows; i++) {
+            usernames[i] = "hot" + i;
+            members.add(new Member(usernames[i], 0));
+        }
+        memberRepository.saveAll(members);
+
+        memberAgeService = context.getBean(MemberAgeService.class);
+        optimisticRetryTemplate = context.getBean(OptimisticRetryTemplate.class);
+        retriesBefore = optimisticRetryTemplate.getRetries();
+        exhaustedBefore = optimisticRetryTemplate.getExhausted();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n[hotRows=%d] optimistic retries=%d, exhausted=%d%n", hotRows,
+                optimisticRetryTemplate.getRetries() - retriesBefore,
+                optimisticRetryTemplate.getExhausted() - exhaustedBefore);
+        context.close();
+    }
+
+    @Benchmark
+    public int optimisticRetry() {
+        try {
+            return memberAgeService.increaseAge(pick());
+        } catch (OptimisticLockingFailureException e) {
+            return 0;
+        }
+    }
+
+    @Benchmark
+    public int pessimisticLock() {
+        return memberAgeService.increaseAgeWithLock(pick());
+    }
+
+    private String pick() {
+        return usernames[ThreadLocalRandom.current().nextInt(usernames.length)];
+    }
+}
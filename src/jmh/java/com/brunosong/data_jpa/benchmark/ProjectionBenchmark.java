@@ -0,0 +1,92 @@
+package com.brunosong.data_jpa.benchmark;
+
+import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.dto.MemberSummary;
+import com.brunosong.data_jpa.dto.MemberTeamView;
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* findListByUsername 를 엔티티로 받을때 vs 동적 프로젝션 (인터페이스 / DTO) 으로 받을때.
+ * 서비스 쓰기 트랜잭션 안에서 부르는 경우라서 엔티티는 영속성 컨텍스트 등록 + 스냅샷까지 생긴다.
+ * 할당량은 gc 프로파일러 (build.gradle) 의 gc.alloc.rate.norm (호출 한번당 바이트) 으로 본다.
+ *
+ *   ./gradlew jmh -Pjmh.includes=ProjectionBenchmark
+ *
+ * teams : 같은 username 이 팀마다 한명씩 있어서 한번 조회에 teams 건이 나온다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectionBenchmark {
+
+    @Param({"10", "100"})
+    int teams;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TransactionTemplate tx;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, teams, 10);
+
+        memberRepository = context.getBean(MemberRepository.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void entity(Blackhole bh) {
+        tx.executeWithoutResult(status -> {
+            for (Member member : memberRepository.findListByUsername("member1")) {
+                bh.consume(member.getUsername());
+                bh.consume(member.getTeam().getName());   // 팀 이름이 필요하면 지연로딩 (배치 페치) 까지
+            }
+        });
+    }
+
+    @Benchmark
+    public void interfaceProjection(Blackhole bh) {
+        tx.executeWithoutResult(status -> {
+            List<MemberTeamView> views = memberRepository.findListByUsername("member1", MemberTeamView.class);
+            for (MemberTeamView view : views) {
+                bh.consume(view.getUsername());
+                bh.consume(view.getTeamName());
+            }
+        });
+    }
+
+    @Benchmark
+    public void dtoProjection(Blackhole bh) {
+        tx.executeWithoutResult(status -> {
+            for (MemberDto dto : memberRepository.findListByUsername("member1", MemberDto.class)) {
+                bh.consume(dto.getUsername());
+                bh.consume(dto.getTeamName());
+            }
+        });
+    }
+
+    // 팀 이름 없이 회원 컬럼만 필요할때
+    @Benchmark
+    public void summaryProjection(Blackhole bh) {
+        tx.executeWithoutResult(status -> {
+            for (MemberSummary summary : memberRepository.findListByUsername("member1", MemberSummary.class)) {
+                bh.consume(summary.getUsername());
+                bh.consume(summary.getAge());
+            }
+        });
+    }
+}
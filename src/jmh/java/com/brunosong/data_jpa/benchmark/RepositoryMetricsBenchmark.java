@@ -0,0 +1,52 @@
+package com.brunosong.data_jpa.benchmark;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/* 리포지토리 측정 (actuator 호출 시간 + 결과 건수 인터셉터) 을 켰을때와 껐을때 같은 호출의 차이.
+ * 차이가 수 마이크로초 안쪽이어야 한다. 호출당 할당량 (gc.alloc.rate.norm) 차이도 같이 본다. (측정했을때 60 B/op 정도)
+ * JIT 가 다 끝날때까지 시간이 좀 걸려서 워밍업이 짧으면 시간 값은 흔들린다. 할당량이 더 믿을만하다.
+ *
+ *   ./gradlew jmh -Pjmh.includes=RepositoryMetricsBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryMetricsBenchmark {
+
+    @Param({"true", "false"})
+    boolean instrumented;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    Long id;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(
+                "management.metrics.data.repository.autotime.enabled=" + instrumented,
+                "management.metrics.data.repository.autotime.percentiles-histogram=" + instrumented,
+                "monitor.repository.result-size=" + instrumented);
+        memberRepository = context.getBean(MemberRepository.class);
+        id = memberRepository.save(new Member("metrics", 10)).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object findById() {
+        return memberRepository.findById(id);
+    }
+
+    @Benchmark
+    public Object findListByUsername() {
+        return memberRepository.findListByUsername("metrics");
+    }
+}
@@ -9,7 +9,6 @@ import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.boot.web.servlet.server.ServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.domain.AuditorAware;
-import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 import javax.servlet.ServletContext;
@@ -21,8 +20,8 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
-@EnableJpaAuditing
 @SpringBootApplication
 public class DataJpaApplication {
 
@@ -46,9 +45,16 @@ public class DataJpaApplication {
         SpringApplication.run(DataJpaApplication.class, args);
     }
 
+    // AuditListener 가 트랜잭션당 한번만 호출한다. UUID.randomUUID() 는 SecureRandom 을 같이 써서 동시에 많이 부르면 경합이 생긴다.
+    // randomUUID() 처럼 버전 (4, 랜덤) 과 variant (IETF) 비트는 직접 맞춰준다.
     @Bean
     public AuditorAware<String> auditorProvider() {
-        return () -> Optional.of(UUID.randomUUID().toString());
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+            long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+            return Optional.of(new UUID(msb, lsb).toString());
+        };
     }
 
 }
@@ -0,0 +1,51 @@
+package com.brunosong.data_jpa.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/* 비동기 리포지토리 메소드 (@Async(MEMBER_QUERY_EXECUTOR)) 를 실행하는 스레드풀.
+ *
+ * 쿼리 하나가 커넥션 하나를 쓰니까 스레드를 커넥션 풀 크기보다 많이 둬봐야 커넥션을 기다리기만 한다. 그래서 같은 크기로 고정한다.
+ * 큐도 크기를 제한해서 (member.async.queue-capacity) 꽉 차면 무한정 쌓지 않고 TaskRejectedException 으로 바로 거절한다.
+ * 컨트롤러는 이걸 503 으로 돌려준다.
+ *
+ * 회원 조회 풀은 @Async(MEMBER_QUERY_EXECUTOR) / @Qualifier 로 이름을 찍어서만 쓴다.
+ * Executor 빈이 하나라도 있으면 부트가 applicationTaskExecutor 를 안 만들어서 (@ConditionalOnMissingBean)
+ * MVC 비동기 처리나 이름 없는 @Async 가 이 풀을 같이 쓰게 된다. 그래서 부트 기본 실행기를 부트 설정 (spring.task.execution) 그대로 직접 만든다.
+ * */
+@EnableAsync
+@Configuration
+public class AsyncConfig {
+
+    public static final String MEMBER_QUERY_EXECUTOR = "memberQueryExecutor";
+
+    @Bean(MEMBER_QUERY_EXECUTOR)
+    public ThreadPoolTaskExecutor memberQueryExecutor(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                                                      @Value("${member.async.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("member-query-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+}
@@ -0,0 +1,12 @@
+package com.brunosong.data_jpa.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/* 스프링 @Cacheable. 캐시 매니저는 하이버네이트 2차 캐시와 같은 JCache (ehcache.xml) 를 쓴다. (spring.cache.jcache.config) */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String MEMBER_SEARCH = "memberSearch";
+}
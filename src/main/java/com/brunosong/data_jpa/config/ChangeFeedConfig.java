@@ -0,0 +1,50 @@
+package com.brunosong.data_jpa.config;
+
+import com.brunosong.data_jpa.entity.MemberTombstoneListener;
+import com.brunosong.data_jpa.entity.TeamMemberCountListener;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+
+/* 회원 삭제 툼스톤 리스너를 하이버네이트 이벤트에 등록한다. (엔티티 콜백 @PreRemove 와 달리 delete 가 실제로 나간 뒤에 불린다)
+ * hibernate.integrator_provider 는 하나만 둘수 있어서 팀 인원수 리스너 (TeamMemberCountListener) 도 여기서 같이 등록한다.
+ * 기본 flush 리스너 뒤에 붙어야 flush 가 끝난 다음에 인원수를 반영한다. (append)
+ * */
+@Configuration
+public class ChangeFeedConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer memberTombstoneCustomizer() {
+        return properties -> properties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> Collections.singletonList(new MemberTombstoneIntegrator()));
+    }
+
+    static class MemberTombstoneIntegrator implements Integrator {
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+            EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+            registry.appendListeners(EventType.POST_DELETE, new MemberTombstoneListener());
+
+            TeamMemberCountListener memberCount = new TeamMemberCountListener();
+            registry.appendListeners(EventType.POST_INSERT, memberCount);
+            registry.appendListeners(EventType.POST_UPDATE, memberCount);
+            registry.appendListeners(EventType.POST_DELETE, memberCount);
+            registry.appendListeners(EventType.FLUSH, memberCount);
+            registry.appendListeners(EventType.AUTO_FLUSH, memberCount);
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.brunosong.data_jpa.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/* app.datasource.replica.enabled=true 일때만 primary / replica 두 개의 커넥션 풀을 만들고 라우팅한다.
+ * (application-replica.yml 참고) 설정이 없으면 스프링 부트 기본 DataSource 그대로 쓴다.
+ *
+ *   primary : spring.datasource.*  (풀 설정은 spring.datasource.hikari.*)
+ *   replica : app.datasource.replica.hikari.*
+ * */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    // connection-timeout 을 짧게 두면 replica 풀이 꽉 찼을때 빨리 primary 로 넘어간다.
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                               @Value("${app.datasource.replica.lag.query:}") String lagQuery,
+                                               @Value("${app.datasource.replica.lag.max:5s}") Duration maxLag,
+                                               @Value("${app.datasource.replica.lag.check-interval:5s}") Duration checkInterval) {
+        return new ReplicaLagMonitor(replicaDataSource, lagQuery, maxLag, checkInterval);
+    }
+
+    @Bean
+    public ReplicationRoutingDataSource routingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                          @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                                          ReplicaLagMonitor replicaLagMonitor) {
+        return new ReplicationRoutingDataSource(primaryDataSource, replicaDataSource, replicaLagMonitor);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicationRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
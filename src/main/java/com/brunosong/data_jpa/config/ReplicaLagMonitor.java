@@ -0,0 +1,80 @@
+package com.brunosong.data_jpa.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/* replica 가 primary 보다 얼마나 늦는지 주기적으로 확인한다. 허용치(maxLag)를 넘으면 읽기도 primary 로 보낸다.
+ * lagQuery 는 지연 시간을 초 단위 숫자 하나로 돌려주는 쿼리. (DB 마다 다르다)
+ *   PostgreSQL : select coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)
+ *   MySQL      : 지연값을 기록하는 heartbeat 테이블 조회
+ * H2 처럼 lagQuery 가 없으면 항상 replica 를 쓴다.
+ * 라우팅 할때마다 쿼리를 날리지 않도록 별도 스레드에서 checkInterval 마다 확인한 값을 쓴다.
+ * */
+@Slf4j
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+
+    private volatile boolean replicaUsable = true;
+    private volatile double lastLagSeconds;
+
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, Duration checkInterval) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+
+        if (StringUtils.hasText(lagQuery)) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "replica-lag-monitor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public double getLastLagSeconds() {
+        return lastLagSeconds;
+    }
+
+    void check() {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            lastLagSeconds = rs.next() ? rs.getDouble(1) : 0;
+            boolean usable = lastLagSeconds <= maxLagSeconds;
+            if (usable != replicaUsable) {
+                log.warn("replica 지연 {} 초 (허용 {} 초) -> {}", lastLagSeconds, maxLagSeconds, usable ? "replica 사용" : "primary 로 전환");
+            }
+            replicaUsable = usable;
+        } catch (Exception e) {
+            // 지연을 확인할수 없으면 안전하게 primary 로 보낸다.
+            replicaUsable = false;
+            log.warn("replica 지연 확인 실패 : {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.brunosong.data_jpa.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/* readOnly 트랜잭션이면 replica, 아니면 primary 로 보낸다.
+ *
+ * 트랜잭션이 시작할때는 아직 readOnly 여부가 동기화 매니저에 없어서, 반드시 LazyConnectionDataSourceProxy 로 감싸서
+ * 실제 커넥션을 첫 쿼리 시점에 가져오게 해야 한다. (DataSourceRoutingConfig 참고)
+ * 스프링 데이터 JPA 의 조회 메소드는 SimpleJpaRepository 의 @Transactional(readOnly = true) 를 타기 때문에
+ * 바깥에 트랜잭션이 없으면 findReadOnlyByUsername, findByAge 같은 조회는 전부 replica 로 간다.
+ *
+ * 메소드의 readOnly 힌트 (org.hibernate.readOnly, findReadOnlyByUsername) 만 보고 보내지는 않는다. 읽기/쓰기 트랜잭션 안에서 부르면 primary 로 간다.
+ *   - 그 트랜잭션의 EntityManager 는 이미 primary 커넥션 하나에 묶여 있다. replica 로 보내려면 트랜잭션을 멈추고 (REQUIRES_NEW)
+ *     다른 EntityManager 로 읽어야 해서 돌려받은 엔티티가 준영속이 된다. (지연 로딩 X, 같은 id 가 두 객체)
+ *   - 같은 트랜잭션에서 방금 쓴 값 (flush 전 / 커밋 전) 을 replica 는 모른다. 자기가 쓴 것을 못 읽게 된다.
+ * replica 로 보내고 싶은 조회는 트랜잭션 밖에서 부르거나 @Transactional(readOnly = true) 메소드로 따로 뺀다.
+ * */
+@Slf4j
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaLagMonitor lagMonitor;
+
+    private final LongAdder replicaFallbacks = new LongAdder();
+
+    public ReplicationRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) {
+        this.primary = primary;
+        this.replica = replica;
+        this.lagMonitor = lagMonitor;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        targets.put(REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && lagMonitor.isReplicaUsable()) {
+            return REPLICA;
+        }
+        return PRIMARY;
+    }
+
+    // replica 풀이 다 차서 커넥션을 못 받으면 (connection-timeout) 기다리지 않고 primary 로 보낸다.
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (PRIMARY.equals(determineCurrentLookupKey())) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            replicaFallbacks.increment();
+            log.warn("replica 커넥션 획득 실패, primary 로 보냅니다. : {}", e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (PRIMARY.equals(determineCurrentLookupKey())) {
+            return primary.getConnection(username, password);
+        }
+        try {
+            return replica.getConnection(username, password);
+        } catch (SQLException e) {
+            replicaFallbacks.increment();
+            log.warn("replica 커넥션 획득 실패, primary 로 보냅니다. : {}", e.getMessage());
+            return primary.getConnection(username, password);
+        }
+    }
+
+    public long getReplicaFallbacks() {
+        return replicaFallbacks.sum();
+    }
+}
@@ -0,0 +1,10 @@
+package com.brunosong.data_jpa.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/* @Scheduled 배치 (MemberArchiveService) */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
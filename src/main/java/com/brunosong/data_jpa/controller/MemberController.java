@@ -1,31 +1,90 @@
 package com.brunosong.data_jpa.controller;
 
+import com.brunosong.data_jpa.dto.BulkImportResult;
+import com.brunosong.data_jpa.dto.ChangeWatermark;
+import com.brunosong.data_jpa.dto.MemberCursor;
 import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.dto.MemberImportDto;
+import com.brunosong.data_jpa.dto.MemberPageStamp;
+import com.brunosong.data_jpa.dto.MemberSearchCondition;
+import com.brunosong.data_jpa.dto.MemberSliceDto;
+import com.brunosong.data_jpa.dto.MemberStamp;
 import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.entity.MemberArchive;
 import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.service.MemberBulkImportService;
+import com.brunosong.data_jpa.service.MemberChangeFeedService;
+import com.brunosong.data_jpa.service.MemberExportService;
+import com.brunosong.data_jpa.service.MemberSearchService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    private static final int MAX_SLICE_SIZE = 2000;
+
     private final MemberRepository memberRepository;
+    private final MemberExportService memberExportService;
+    private final MemberBulkImportService memberBulkImportService;
+    private final MemberChangeFeedService memberChangeFeedService;
+    private final MemberSearchService memberSearchService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${member.bulk-import.max-rows:100000}")
+    private int bulkImportMaxRows;
 
+    /* 조건부 GET. 응답의 ETag 를 If-None-Match 로 (또는 Last-Modified 를 If-Modified-Since 로) 다시 보내면
+       lastModifiedDate, version 만 읽어보고 안 바뀌었으면 엔티티를 읽지 않고 304 로 끝낸다. (null 을 리턴하면 본문 없이 나간다) */
     @GetMapping("/members/{id}")
-    public String findMember(@PathVariable("id") Long id) {
-        return memberRepository.findById(id).get().getUsername();
+    public String findMember(@PathVariable("id") Long id, WebRequest request) {
+        Optional<MemberStamp> stamp = memberRepository.findStampById(id);
+        if (stamp.isPresent() && request.checkNotModified(stamp.get().etag(), stamp.get().lastModifiedMillis())) {
+            return null;
+        }
+        // member 에 없으면 보관 테이블을 본다. (보관된 회원은 조건부 GET 없이 그냥 200)
+        return memberRepository.findById(id)
+                .map(Member::getUsername)
+                .or(() -> memberRepository.findArchivedById(id).map(MemberArchive::getUsername))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "회원이 없습니다. : " + id));
     }
 
     /* 이게 되긴 하지만 권장하지는 않는다. 이렇게 단순한 경우도 거의 없고 .. .내가 생각할때는 뭔가 명확함이 떨어진다.
@@ -44,22 +103,206 @@ public class MemberController {
     * */
     @GetMapping("/members")
     public Page<MemberDto> list(@PageableDefault(size = 12, sort = "username", direction = Sort.Direction.DESC) // 이렇게 처리도 가능하다.
-            Pageable pageable) {
+            Pageable pageable, WebRequest request) {
+
+        //회원/팀이 하나도 안 바뀌었으면 (최근 수정 시각 + 건수) 페이지 조회, count 쿼리, JSON 변환 없이 304.
+        //ETag 는 URL (page, size, sort) 별로 캐시되니까 값에 페이지 정보는 넣지 않아도 된다.
+        MemberPageStamp stamp = memberRepository.findPageStamp();
+        if (request.checkNotModified(stamp.etag())) {
+            return null;
+        }
+
+        //Member 가 그대로 나가면 내부 문서를 거의다 공유한 형태이다. 그래서 절대 Member 가 나가면 안된다. DTO로 변환해서 나가야 한다.
+        //page.map(MemberDto::new) 로 바꾸면 엔티티를 다 만들고 (스냅샷, 프록시) 팀 이름은 채우지도 못한다.
+        //그래서 처음부터 DTO 로 조회한다.
+        return memberRepository.findMemberDtoPage(pageable);
+    }
+
+    /*  http://localhost:8080/members?after=&size=12  처음 페이지 (after 값을 비워서 호출)
+    *   http://localhost:8080/members?after={next}   응답의 next 를 그대로 넘기면 다음 페이지
+    *   offset 을 쓰지 않고 count 쿼리도 없어서 아무리 뒤 페이지라도 속도가 같다. 정렬은 username desc, id desc 로 고정이다.
+    * */
+    @GetMapping(value = "/members", params = "after")
+    public MemberSliceDto listAfter(@RequestParam("after") String after,
+                                    @RequestParam(value = "size", defaultValue = "12") int size) {
+
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size 는 1 ~ " + MAX_SLICE_SIZE + " 사이여야 합니다.");
+        }
+
+        PageRequest pageRequest = PageRequest.ofSize(size);
+        Slice<MemberDto> slice;
+        if (!StringUtils.hasText(after)) {
+            slice = memberRepository.findMemberDtoKeysetFirst(pageRequest);
+        } else {
+            MemberCursor cursor;
+            try {
+                cursor = MemberCursor.decode(after);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+            slice = memberRepository.findMemberDtoKeysetAfter(cursor.getUsername(), cursor.getId(), pageRequest);
+        }
+
+        List<MemberDto> content = slice.getContent();
+        String next = slice.hasNext() ? MemberCursor.of(content.get(content.size() - 1)).encode() : null;
+
+        return new MemberSliceDto(content, slice.hasNext(), next);
+    }
+
+    /*  http://localhost:8080/members/search?usernamePrefix=user1&ageGoe=10&ageLoe=20&teamName=teamA&page=0&size=20&sort=age,desc
+    *   조건은 다 빼도 된다. 정렬은 id, username, age 만 된다. 같은 검색은 10초 동안 캐시에서 준다. (MemberSearchService)
+    * */
+    @GetMapping("/members/search")
+    public Page<MemberDto> search(MemberSearchCondition condition,
+                                  @PageableDefault(size = 20) Pageable pageable) {
+
+        try {
+            return memberSearchService.search(condition, pageable);
+        } catch (InvalidDataAccessApiUsageException e) {   // 정렬할수 없는 프로퍼티
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMostSpecificCause().getMessage(), e);
+        }
+    }
+
+    /*  http://localhost:8080/members/export?format=csv  (기본은 ndjson)
+    *   전체를 메모리에 올리지 않고 읽는 대로 응답에 바로 쓴다.
+    * */
+    @GetMapping("/members/export")
+    public void export(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        if ("csv".equalsIgnoreCase(format)) {
+            response.setContentType("text/csv");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"members.csv\"");
+            memberExportService.writeCsv(response.getWriter());
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            response.setContentType("application/x-ndjson");
+            memberExportService.writeNdjson(response.getWriter());
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "지원하지 않는 format 입니다. : " + format);
+        }
+    }
+
 
-        Page<Member> page = memberRepository.findAll(pageable);
-        //이상황은 Member 가 나가게 되기때문에 내부 문서를 거의다 공유한 형태이다.
-        // 그래서 절대 Member 가 나가면 안된다. DTO로 변환해서 나가야 한다.
+    /*  변경 피드 (NDJSON). 전체를 다시 받지 않고 지난번 이후 바뀐 회원 / 삭제된 회원만 받는다.
+    *   http://localhost:8080/members/changes              처음부터
+    *   http://localhost:8080/members/changes?after={cursor}  마지막으로 처리한 줄의 cursor 부터
+    *   한줄에 한건 {"type":"UPSERT"|"DELETE", ..., "cursor":"..."}. size 는 한번에 읽는 묶음 크기이고 따라잡을 때까지 계속 내려준다.
+    * */
+    @GetMapping("/members/changes")
+    public void changes(@RequestParam(value = "after", required = false) String after,
+                        @RequestParam(value = "size", defaultValue = "500") int size,
+                        HttpServletResponse response) throws IOException {
+
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size 는 1 ~ " + MAX_SLICE_SIZE + " 사이여야 합니다.");
+        }
+
+        ChangeWatermark watermark = ChangeWatermark.BEGINNING;
+        if (StringUtils.hasText(after)) {
+            try {
+                watermark = ChangeWatermark.decode(after);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        }
+
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType("application/x-ndjson");
+        memberChangeFeedService.writeNdjson(watermark, size, response.getWriter());
+    }
+
+
+    /*  POST http://localhost:8080/members/bulk
+    *   [{"username":"user1","age":10,"teamName":"teamA"}, ...]
+    *   한건씩 save 하지 않고 jdbc batch + flush/clear 로 한번에 넣는다.
+    *   본문을 List 로 한번에 받지 않고 읽는 대로 한건씩 넣는다. member.bulk-import.max-rows 를 넘으면 413 이다.
+    *   member.bulk-import.batch-size 건마다 커밋한다. 실패하면 (413, 400 포함) 그 배치만 롤백되고 앞 배치는 남는다.
+    *   한 트랜잭션으로 넣지 않는 이유는 변경 피드 (/members/changes) 때문이다. 피드는 member.change-feed.lag 보다 오래 걸린
+    *   쓰기 트랜잭션을 놓칠수 있어서 배치 하나를 넣는 시간이 lag 보다 짧아야 한다.
+    * */
+    @PostMapping(value = "/members/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BulkImportResult bulkImport(InputStream body) throws IOException {
+        try (MappingIterator<MemberImportDto> rows = objectMapper.readerFor(MemberImportDto.class).readValues(body)) {
+            return memberBulkImportService.importMembers(() -> limit(rows, bulkImportMaxRows));
+        } catch (RuntimeJsonMappingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    private static <T> Iterator<T> limit(Iterator<T> rows, int maxRows) {
+        return new Iterator<T>() {
+            int read;
+
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
 
-        Page<MemberDto> members = page.map(MemberDto::new);
-        return members;
+            @Override
+            public T next() {
+                if (++read > maxRows) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "한번에 " + maxRows + " 건까지 등록할수 있습니다.");
+                }
+                return rows.next();
+            }
+        };
+    }
+
+
+    /*  비동기 조회. 쿼리는 memberQueryExecutor 스레드에서 돌고 톰캣 스레드는 바로 반납된다. 끝나면 그때 응답을 쓴다.
+    *   http://localhost:8080/async/members/1
+    *   http://localhost:8080/async/members?username=user1
+    *   http://localhost:8080/async/members?age=10&page=0&size=10
+    *   http://localhost:8080/async/members/dto
+    * */
+    @GetMapping("/async/members/{id}")
+    public CompletableFuture<MemberDto> findMemberAsync(@PathVariable("id") Long id) {
+        return submit(() -> memberRepository.findAsyncById(id))
+                .thenApply(member -> {
+                    if (member == null) {
+                        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "회원이 없습니다. : " + id);
+                    }
+                    return new MemberDto(member);
+                });
+    }
+
+    @GetMapping(value = "/async/members", params = "username")
+    public CompletableFuture<List<MemberDto>> findByUsernameAsync(@RequestParam("username") String username) {
+        return submit(() -> memberRepository.findAsyncByUsername(username))
+                .thenApply(members -> members.stream().map(MemberDto::new).collect(Collectors.toList()));
+    }
+
+    @GetMapping(value = "/async/members", params = "age")
+    public CompletableFuture<Page<MemberDto>> findByAgeAsync(@RequestParam("age") int age,
+                                                             @PageableDefault(size = 12) Pageable pageable) {
+        return submit(() -> memberRepository.findAsyncByAge(age, pageable))
+                .thenApply(page -> page.map(MemberDto::new));
+    }
+
+    @GetMapping("/async/members/dto")
+    public CompletableFuture<List<MemberDto>> findMemberDtoAsync() {
+        return submit(memberRepository::findAsyncMemberDto);
+    }
+
+    // 실행기 큐까지 꽉 찼으면 기다리게 하지 않고 바로 503 으로 돌려보낸다.
+    private static <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> query) {
+        try {
+            return query.get();
+        } catch (TaskRejectedException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "조회 요청이 너무 많습니다. 잠시 후 다시 시도해 주세요.", e);
+        }
     }
 
 
     @PostConstruct
     public void init() {
+        List<MemberImportDto> rows = new ArrayList<>();
         for (int i = 0; i < 100; i++) {
-            memberRepository.save(new Member("user" + i, i));
+            rows.add(new MemberImportDto("user" + i, i, null));
         }
+        memberBulkImportService.importMembers(rows);
     }
 
 
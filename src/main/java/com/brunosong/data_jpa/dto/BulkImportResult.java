@@ -0,0 +1,23 @@
+package com.brunosong.data_jpa.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+public class BulkImportResult {
+
+    private final long members;
+    private final long teams;
+    private final long elapsedMillis;
+
+    public BulkImportResult(long members, long teams, long elapsedMillis) {
+        this.members = members;
+        this.teams = teams;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? members : members * 1000 / elapsedMillis;
+    }
+}
@@ -0,0 +1,23 @@
+package com.brunosong.data_jpa.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+public class BulkUpdateResult {
+
+    private final int chunks;           // 지금까지 처리한 청크 수
+    private final long affectedRows;    // 지금까지 바뀐 행 수
+    private final Long lastId;          // 마지막으로 처리한 청크의 끝 id
+    private final long elapsedMillis;
+    private final boolean completed;
+
+    public BulkUpdateResult(int chunks, long affectedRows, Long lastId, long elapsedMillis, boolean completed) {
+        this.chunks = chunks;
+        this.affectedRows = affectedRows;
+        this.lastId = lastId;
+        this.elapsedMillis = elapsedMillis;
+        this.completed = completed;
+    }
+}
@@ -0,0 +1,51 @@
+package com.brunosong.data_jpa.dto;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/* 변경 피드에서 어디까지 읽었는지. (수정 시각, id) 순서라서 같은 시각에 바뀐 회원이 많아도 id 로 이어서 읽는다.
+   MemberCursor 처럼 클라이언트에게는 Base64 문자열로만 보인다. */
+@Getter
+public class ChangeWatermark {
+
+    private static final char SEPARATOR = ':';
+
+    // 처음부터 읽을때
+    public static final ChangeWatermark BEGINNING = new ChangeWatermark(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+
+    private final LocalDateTime modifiedDate;
+    private final Long id;
+
+    public ChangeWatermark(LocalDateTime modifiedDate, Long id) {
+        this.modifiedDate = modifiedDate;
+        this.id = id;
+    }
+
+    public boolean isBefore(ChangeWatermark other) {
+        int compare = modifiedDate.compareTo(other.modifiedDate);
+        return compare < 0 || (compare == 0 && id < other.id);
+    }
+
+    public String encode() {
+        String raw = id + String.valueOf(SEPARATOR) + modifiedDate;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 시각 (ISO) 에 ':' 가 들어가서 첫번째 구분자로 자른다.
+    public static ChangeWatermark decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idx = raw.indexOf(SEPARATOR);
+            if (idx < 0) {
+                throw new IllegalArgumentException("잘못된 워터마크 입니다. : " + token);
+            }
+            return new ChangeWatermark(LocalDateTime.parse(raw.substring(idx + 1)), Long.valueOf(raw.substring(0, idx)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {   // NumberFormatException 포함
+            throw new IllegalArgumentException("잘못된 워터마크 입니다. : " + token, e);
+        }
+    }
+}
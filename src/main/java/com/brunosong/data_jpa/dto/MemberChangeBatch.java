@@ -0,0 +1,20 @@
+package com.brunosong.data_jpa.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/* 변경 피드 한 묶음. next 부터 다시 조회하면 다음 묶음이다. (변경이 없으면 받은 워터마크 그대로) */
+@Getter
+public class MemberChangeBatch {
+
+    private final List<MemberChangeDto> changes;
+    private final ChangeWatermark next;
+    private final boolean hasMore;
+
+    public MemberChangeBatch(List<MemberChangeDto> changes, ChangeWatermark next, boolean hasMore) {
+        this.changes = changes;
+        this.next = next;
+        this.hasMore = hasMore;
+    }
+}
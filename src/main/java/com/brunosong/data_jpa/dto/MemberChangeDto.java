@@ -0,0 +1,48 @@
+package com.brunosong.data_jpa.dto;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/* 변경 피드 한 건. 바뀐 회원 (UPSERT) 이거나 삭제된 회원 (DELETE, 툼스톤) 이다.
+   cursor 는 이 건까지 읽었다는 워터마크라서 중간에 끊겨도 마지막으로 처리한 건의 cursor 부터 다시 받으면 된다. */
+@Getter
+public class MemberChangeDto {
+
+    public enum Type { UPSERT, DELETE }
+
+    private final Type type;
+    private final Long id;
+    private final String username;
+    private final Integer age;
+    private final String teamName;
+    private final LocalDateTime modifiedDate;
+
+    // select new (회원)
+    public MemberChangeDto(Long id, String username, int age, String teamName, LocalDateTime modifiedDate) {
+        this.type = Type.UPSERT;
+        this.id = id;
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+        this.modifiedDate = modifiedDate;
+    }
+
+    // select new (툼스톤)
+    public MemberChangeDto(Long id, String username, LocalDateTime modifiedDate) {
+        this.type = Type.DELETE;
+        this.id = id;
+        this.username = username;
+        this.age = null;
+        this.teamName = null;
+        this.modifiedDate = modifiedDate;
+    }
+
+    public ChangeWatermark watermark() {
+        return new ChangeWatermark(modifiedDate, id);
+    }
+
+    public String getCursor() {
+        return watermark().encode();
+    }
+}
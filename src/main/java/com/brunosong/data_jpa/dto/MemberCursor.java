@@ -0,0 +1,49 @@
+package com.brunosong.data_jpa.dto;
+
+import com.brunosong.data_jpa.entity.Member;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/* (username, id) 키셋 페이징의 다음 위치. 클라이언트에게는 Base64 문자열로만 보이게 한다. */
+@Getter
+public class MemberCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final String username;
+    private final Long id;
+
+    public MemberCursor(String username, Long id) {
+        this.username = username;
+        this.id = id;
+    }
+
+    public static MemberCursor of(Member member) {
+        return new MemberCursor(member.getUsername(), member.getId());
+    }
+
+    public static MemberCursor of(MemberDto member) {
+        return new MemberCursor(member.getUsername(), member.getId());
+    }
+
+    public String encode() {
+        String raw = id + String.valueOf(SEPARATOR) + username;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // id 를 앞에 두었기 때문에 username 에 ':' 가 있어도 첫번째 구분자로 자르면 된다.
+    public static MemberCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idx = raw.indexOf(SEPARATOR);
+            if (idx < 0) {
+                throw new IllegalArgumentException("잘못된 커서 입니다. : " + token);
+            }
+            return new MemberCursor(raw.substring(idx + 1), Long.valueOf(raw.substring(0, idx)));
+        } catch (IllegalArgumentException e) {   // NumberFormatException 포함
+            throw new IllegalArgumentException("잘못된 커서 입니다. : " + token, e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.brunosong.data_jpa.dto;
 
 import com.brunosong.data_jpa.entity.Member;
 import lombok.Data;
+import org.springframework.data.annotation.PersistenceCreator;
 
 @Data
 public class MemberDto {
@@ -10,6 +11,8 @@ public class MemberDto {
     private String username;
     private String teamName;
 
+    // 동적 프로젝션 (findByUsername(.., MemberDto.class)) 이 이 생성자 파라미터 이름으로 select 할 컬럼을 정한다. (teamName -> team.name)
+    @PersistenceCreator
     public MemberDto(Long id, String username, String teamName) {
         this.id = id;
         this.username = username;
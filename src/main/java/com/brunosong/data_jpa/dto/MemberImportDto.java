@@ -0,0 +1,19 @@
+package com.brunosong.data_jpa.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class MemberImportDto {
+
+    private String username;
+    private int age;
+    private String teamName;    // 없으면 팀 없이 저장
+
+    public MemberImportDto(String username, int age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+}
@@ -0,0 +1,24 @@
+package com.brunosong.data_jpa.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/* 회원 목록 전체의 변경 여부. 가장 최근 수정 시각 + 건수 (삭제는 시각으로 알수 없어서 건수로 잡는다) + 팀 최근 수정 시각 (팀 이름이 목록에 나간다)
+ * 목록은 삭제를 시각만으로 알수 없어서 Last-Modified 는 쓰지 않고 ETag 로만 비교한다.
+ * */
+public interface MemberPageStamp {
+
+    LocalDateTime getLastModifiedDate();
+
+    Long getCount();
+
+    LocalDateTime getTeamLastModifiedDate();
+
+    default String etag() {
+        return "\"p" + getCount() + "-" + millis(getLastModifiedDate()) + "-" + millis(getTeamLastModifiedDate()) + "\"";
+    }
+
+    static long millis(LocalDateTime dateTime) {
+        return dateTime == null ? 0 : dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
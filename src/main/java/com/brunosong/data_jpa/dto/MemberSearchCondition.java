@@ -0,0 +1,43 @@
+package com.brunosong.data_jpa.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.util.StringUtils;
+
+/* 회원 검색 조건. 값이 없는 조건은 쿼리에서 빠진다.
+ *   usernamePrefix : username 이 이걸로 시작 (like 'xxx%', username 인덱스를 탄다)
+ *   ageGoe, ageLoe : 나이 범위 (이상, 이하)
+ *   teamName       : 팀 이름이 같은 회원
+ * */
+@Data
+@NoArgsConstructor
+public class MemberSearchCondition {
+
+    private String usernamePrefix;
+    private Integer ageGoe;
+    private Integer ageLoe;
+    private String teamName;
+
+    public MemberSearchCondition(String usernamePrefix, Integer ageGoe, Integer ageLoe, String teamName) {
+        this.usernamePrefix = usernamePrefix;
+        this.ageGoe = ageGoe;
+        this.ageLoe = ageLoe;
+        this.teamName = teamName;
+    }
+
+    /* 같은 뜻의 조건을 같은 값으로 맞춘다. 공백은 자르고 빈 문자열은 조건 없음, 나이 범위가 뒤집혀 있으면 바꾼다.
+       결과 캐시 키가 되고, 조건 모양이 같으면 쿼리도 같은 모양이 되서 쿼리 계획 캐시를 같이 쓴다. */
+    public MemberSearchCondition normalize() {
+        Integer goe = ageGoe;
+        Integer loe = ageLoe;
+        if (goe != null && loe != null && goe > loe) {
+            goe = ageLoe;
+            loe = ageGoe;
+        }
+        return new MemberSearchCondition(trimToNull(usernamePrefix), goe, loe, trimToNull(teamName));
+    }
+
+    private static String trimToNull(String value) {
+        return StringUtils.hasText(value) ? value.trim() : null;
+    }
+}
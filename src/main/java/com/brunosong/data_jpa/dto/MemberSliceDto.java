@@ -0,0 +1,20 @@
+package com.brunosong.data_jpa.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/* 키셋 페이징 응답. count 쿼리가 없어서 전체 건수 대신 다음 커서만 내려준다. */
+@Getter
+public class MemberSliceDto {
+
+    private final List<MemberDto> content;
+    private final boolean hasNext;
+    private final String next;
+
+    public MemberSliceDto(List<MemberDto> content, boolean hasNext, String next) {
+        this.content = content;
+        this.hasNext = hasNext;
+        this.next = next;
+    }
+}
@@ -0,0 +1,24 @@
+package com.brunosong.data_jpa.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/* 회원 한명의 변경 여부만 확인하는 인터페이스 프로젝션. 엔티티를 만들지 않고 컬럼 두개만 읽는다.
+ * lastModifiedDate 는 같은 트랜잭션(같은 시각) 안에서 여러번 바뀌어도 같을수 있어서 ETag 에는 version 도 같이 넣는다.
+ * */
+public interface MemberStamp {
+
+    LocalDateTime getLastModifiedDate();
+
+    Long getVersion();
+
+    default String etag() {
+        return "\"m" + getVersion() + "-" + lastModifiedMillis() + "\"";
+    }
+
+    // 값이 없으면 -1 (Last-Modified 를 쓰지 않는다)
+    default long lastModifiedMillis() {
+        LocalDateTime lastModified = getLastModifiedDate();
+        return lastModified == null ? -1 : lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,12 @@
+package com.brunosong.data_jpa.dto;
+
+/* 닫힌(closed) 인터페이스 프로젝션. 게터에 있는 컬럼 (id, username, age) 만 select 하고 엔티티는 만들지 않는다.
+   memberRepository.findByUsername("user1", MemberSummary.class) 처럼 타입을 넘겨서 쓴다. */
+public interface MemberSummary {
+
+    Long getId();
+
+    String getUsername();
+
+    int getAge();
+}
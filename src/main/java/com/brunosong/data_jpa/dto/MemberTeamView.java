@@ -0,0 +1,10 @@
+package com.brunosong.data_jpa.dto;
+
+/* 팀 이름까지 한번에 받는 인터페이스 프로젝션. teamName 은 프로퍼티 경로 team.name 으로 풀려서 left join 으로 그 컬럼만 가져온다.
+   (getTeam() 으로 중첩 프로젝션을 만들면 팀 엔티티 전체를 select 한다) */
+public interface MemberTeamView {
+
+    String getUsername();
+
+    String getTeamName();
+}
@@ -0,0 +1,62 @@
+package com.brunosong.data_jpa.entity;
+
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/* 트랜잭션 하나에서 쓰는 감사(audit) 값. 시간은 트랜잭션 시작 후 처음 쓸때 한번만 읽고 (DB 의 CURRENT_TIMESTAMP 와 같은 개념)
+ * 작성자도 AuditorAware 를 트랜잭션당 한번만 호출한다. 엔티티 1000개를 넣어도 시계/작성자 조회는 한번이다.
+ * 트랜잭션 밖에서는 호출할때마다 새로 만든다.
+ * */
+public final class AuditContext {
+
+    private final LocalDateTime now = LocalDateTime.now();
+    private String auditor;
+    private boolean auditorResolved;
+
+    private AuditContext() {
+    }
+
+    public static AuditContext current() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new AuditContext();
+        }
+        AuditContext context = (AuditContext) TransactionSynchronizationManager.getResource(AuditContext.class);
+        if (context == null) {
+            AuditContext created = new AuditContext();
+            TransactionSynchronizationManager.bindResource(AuditContext.class, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(AuditContext.class);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(AuditContext.class, created);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(AuditContext.class);
+                }
+            });
+            context = created;
+        }
+        return context;
+    }
+
+    public LocalDateTime now() {
+        return now;
+    }
+
+    public String auditor(AuditorAware<String> auditorAware) {
+        if (!auditorResolved) {
+            auditor = auditorAware.getCurrentAuditor().orElse(null);
+            auditorResolved = true;
+        }
+        return auditor;
+    }
+}
@@ -0,0 +1,47 @@
+package com.brunosong.data_jpa.entity;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.AuditorAware;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import java.util.Optional;
+
+/* BaseEntity 감사 필드를 채우는 리스너. 스프링 데이터의 AuditingEntityListener 는 엔티티마다 리플렉션으로 필드 4개를 찾아서 넣는데
+ * 이건 BaseEntity 메소드를 바로 호출한다. 시간과 작성자는 AuditContext 에서 트랜잭션당 한번만 구한다.
+ * 하이버네이트가 스프링 빈 컨테이너로 만들기 때문에 생성자 주입이 된다.
+ * */
+public class AuditListener {
+
+    private final ObjectProvider<AuditorAware<String>> auditorAwareProvider;
+    private volatile AuditorAware<String> auditorAware;   // 빈 조회(제네릭 타입 매칭)가 비싸서 한번만 찾는다.
+
+    public AuditListener(ObjectProvider<AuditorAware<String>> auditorAwareProvider) {
+        this.auditorAwareProvider = auditorAwareProvider;
+    }
+
+    @PrePersist
+    public void prePersist(Object entity) {
+        if (entity instanceof BaseEntity) {
+            AuditContext context = AuditContext.current();
+            ((BaseEntity) entity).markCreated(context.now(), context.auditor(auditorAware()));
+        }
+    }
+
+    @PreUpdate
+    public void preUpdate(Object entity) {
+        if (entity instanceof BaseEntity) {
+            AuditContext context = AuditContext.current();
+            ((BaseEntity) entity).markModified(context.now(), context.auditor(auditorAware()));
+        }
+    }
+
+    private AuditorAware<String> auditorAware() {
+        AuditorAware<String> resolved = auditorAware;
+        if (resolved == null) {
+            resolved = auditorAwareProvider.getIfAvailable(() -> Optional::empty);
+            auditorAware = resolved;
+        }
+        return resolved;
+    }
+}
@@ -5,14 +5,14 @@ import org.springframework.data.annotation.CreatedBy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedBy;
 import org.springframework.data.annotation.LastModifiedDate;
-import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.Column;
 import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
 import java.time.LocalDateTime;
 
-@EntityListeners(AuditingEntityListener.class)
+// AuditingEntityListener (리플렉션) 대신 AuditListener 가 아래 메소드로 바로 넣는다. 필드 어노테이션은 의미 표시용으로 남겨둔다.
+@EntityListeners(AuditListener.class)
 @MappedSuperclass
 @Getter
 public class BaseEntity {
@@ -31,4 +31,16 @@ public class BaseEntity {
     @LastModifiedBy
     private String lastModifyBy;
 
+    void markCreated(LocalDateTime now, String auditor) {
+        createDate = now;
+        lastModifiedDate = now;
+        createdBy = auditor;
+        lastModifyBy = auditor;
+    }
+
+    void markModified(LocalDateTime now, String auditor) {
+        lastModifiedDate = now;
+        lastModifyBy = auditor;
+    }
+
 }
@@ -0,0 +1,167 @@
+package com.brunosong.data_jpa.entity;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.boot.model.relational.SqlStringGenerationContext;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/* 엔티티마다 시퀀스를 따로 쓰고, 한번에 가져오는 개수(allocation size)를 설정으로 바꿀수 있게 한 시퀀스 생성기.
+ *
+ *   spring.jpa.properties.app.id.{시퀀스이름}.allocation-size: 100
+ *   spring.jpa.properties.app.id.{시퀀스이름}.prefetch: true
+ *
+ * 설정이 없으면 @GenericGenerator 의 increment_size 를 쓴다. pooled-lo 라서 allocation size 만큼은 DB 를 안 간다.
+ *
+ * prefetch 를 켜면 블록을 절반 쓴 시점에 다음 블록 (시퀀스 next value) 을 백그라운드 스레드에서 미리 받아둔다.
+ * 블록이 끝나면 받아둔 값으로 바로 넘어가서 insert 하는 스레드는 시퀀스 조회를 기다리지 않는다.
+ * 미리 받은 값이 아직 안 왔거나 실패하면 기다리지 않고 예전처럼 현재 세션 커넥션으로 직접 가져온다.
+ * 블록이 작으면 (allocation size 1 ~ 몇개) 미리 받는 것보다 쓰는게 빨라서 효과가 없다. 블록이 클때 켠다.
+ * 미리 받아둔 블록은 종료할때 버려진다. (pooled-lo 처럼 id 에 빈 구간이 생길수 있다)
+ * */
+@Slf4j
+public class ConfigurableSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String ALLOCATION_SIZE_PREFIX = "app.id.";
+    public static final String ALLOCATION_SIZE_SUFFIX = ".allocation-size";
+    public static final String PREFETCH_SUFFIX = ".prefetch";
+
+    // 시퀀스 조회는 짧아서 생성기 전체가 스레드 하나를 같이 쓴다. 데몬이라 종료를 막지 않는다.
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "id-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private boolean prefetch;
+    private int incrementSize;
+    private Class<?> identifierClass;
+    private Dialect dialect;
+    private String nextValueSql;
+
+    // prefetch 일때 현재 블록. next > hi 이면 다 쓴 것이다.
+    private long next = 1;
+    private long hi = 0;
+    private CompletableFuture<Long> prefetched;
+    private long prefetchedBlocks;   // 미리 받은 값으로 넘어간 블록 수
+    private volatile ConnectionProvider connectionProvider;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        String sequenceName = params.getProperty(SEQUENCE_PARAM);
+        ConfigurationService configuration = serviceRegistry.getService(ConfigurationService.class);
+        Object configured = configuration.getSettings()
+                .get(ALLOCATION_SIZE_PREFIX + sequenceName + ALLOCATION_SIZE_SUFFIX);
+
+        int allocationSize = ConfigurationHelper.getInt(INCREMENT_PARAM, params, DEFAULT_INCREMENT_SIZE);
+        if (configured != null) {
+            allocationSize = Integer.parseInt(configured.toString().trim());
+        }
+
+        params.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        if (!params.containsKey(OPT_PARAM)) {
+            params.setProperty(OPT_PARAM, "pooled-lo");
+        }
+        super.configure(type, params, serviceRegistry);
+
+        prefetch = ConfigurationHelper.getBoolean(ALLOCATION_SIZE_PREFIX + sequenceName + PREFETCH_SUFFIX,
+                configuration.getSettings(), false);
+        incrementSize = allocationSize;
+        identifierClass = type.getReturnedClass();
+        dialect = serviceRegistry.getService(JdbcEnvironment.class).getDialect();
+    }
+
+    // 시퀀스 이름 (스키마 포함) 은 여기서 정해진다. configure 에서는 아직 없다.
+    @Override
+    public void initialize(SqlStringGenerationContext context) {
+        super.initialize(context);
+        nextValueSql = dialect.getSequenceNextValString(context.format(getDatabaseStructure().getPhysicalName()));
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        if (!prefetch) {
+            return super.generate(session, object);
+        }
+        return nextPrefetched(session);
+    }
+
+    private synchronized Serializable nextPrefetched(SharedSessionContractImplementor session) {
+        if (next > hi) {
+            long lo = takeNextBlock(session);
+            next = lo;
+            hi = lo + incrementSize - 1;
+        }
+        long value = next++;
+
+        // 블록을 절반 넘게 썼으면 다음 블록을 미리 받는다.
+        if (prefetched == null && (hi - value) < incrementSize / 2 + 1) {
+            prefetched = CompletableFuture.supplyAsync(this::fetchFromSequence, PREFETCH_EXECUTOR);
+        }
+
+        IntegralDataTypeHolder holder = IdentifierGeneratorHelper.getIntegralDataTypeHolder(identifierClass);
+        holder.initialize(value);
+        return holder.makeValue();
+    }
+
+    private long takeNextBlock(SharedSessionContractImplementor session) {
+        if (connectionProvider == null) {
+            connectionProvider = session.getFactory().getServiceRegistry().getService(ConnectionProvider.class);
+        }
+        // 이미 받아둔 값만 쓴다. 아직 오는 중이면 기다리지 않고 직접 가져오고, 오는 중인 값은 그 다음 블록으로 남겨둔다.
+        CompletableFuture<Long> future = prefetched;
+        if (future != null && future.isDone()) {
+            prefetched = null;
+            try {
+                long lo = future.join();
+                prefetchedBlocks++;
+                return lo;
+            } catch (CompletionException e) {
+                log.warn("시퀀스 미리 받기 실패, 직접 조회 합니다. : {}", e.getCause().toString());
+            }
+        }
+        // 처음 한번, 미리 받기 실패, 블록을 미리 받는 것보다 빨리 쓴 경우는 세션 커넥션으로 직접 가져온다.
+        return getDatabaseStructure().buildCallback(session).getNextValue().makeValue().longValue();
+    }
+
+    synchronized long prefetchedBlocks() {
+        return prefetchedBlocks;
+    }
+
+    // 백그라운드 스레드라서 세션이 없다. 커넥션 풀에서 따로 하나 빌려서 시퀀스만 읽고 바로 돌려준다.
+    private long fetchFromSequence() {
+        try {
+            Connection connection = connectionProvider.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement(nextValueSql);
+                 ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            } finally {
+                connectionProvider.closeConnection(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(nextValueSql, e);
+        }
+    }
+}
@@ -18,16 +18,17 @@ public class JpaBaseEntity {
     private LocalDateTime createDate;
     private LocalDateTime updateDate;
 
+    // 시간은 트랜잭션당 한번만 읽은 값을 같이 쓴다. (AuditContext)
     @PrePersist
     public void prePersist() {
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = AuditContext.current().now();
         createDate = now;
         updateDate = now;
     }
 
     @PreUpdate
     public void preUpdate() {
-        updateDate = LocalDateTime.now();
+        updateDate = AuditContext.current().now();
     }
 
 }
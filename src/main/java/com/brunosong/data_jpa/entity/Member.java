@@ -1,14 +1,27 @@
 package com.brunosong.data_jpa.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "member")   // 2차 캐시 (리전 설정은 ehcache.xml)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id","username","age"})
 @NamedEntityGraph(name = "Member.all", attributeNodes = @NamedAttributeNode("team"))
+@Table(indexes = {
+        @Index(name = "idx_member_username_id", columnList = "username, member_id"),   // 키셋 페이징 (username, id)
+        @Index(name = "idx_member_age_username_id", columnList = "age, username, member_id"),   // findByAge (+ username 정렬)
+        @Index(name = "idx_member_username_age", columnList = "username, age"),   // findByUsernameAndAgeGreaterThan (username = , age >)
+        @Index(name = "idx_member_team_id", columnList = "team_id"),   // 팀 회원 수 / 포함 여부 / 목록 (countByTeam, EXTRA 지연로딩)
+        @Index(name = "idx_member_modified_id", columnList = "lastModifiedDate, member_id")   // 변경 피드 (lastModifiedDate, id) 순서
+})
 public class Member extends BaseEntity {
 
     public Member(String username) {
@@ -23,10 +36,19 @@ public class Member extends BaseEntity {
     public Member(String username, int age, Team team) {
         this.username = username;
         this.age = age;
-        this.team = team;
+        if (team != null) {
+            changeTeam(team);
+        }
     }
 
-    @Id @GeneratedValue
+    // 팀과 같은 hibernate_sequence 를 같이 쓰지 않고 member_seq 를 따로 쓴다. 한번에 50개씩 할당 받는다.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+    @GenericGenerator(name = "member_seq", strategy = "com.brunosong.data_jpa.entity.ConfigurableSequenceGenerator",
+            parameters = {
+                    @Parameter(name = "sequence_name", value = "member_seq"),
+                    @Parameter(name = "increment_size", value = "50")
+            })
     @Column(name = "member_id")
     private Long id;
 
@@ -34,13 +56,40 @@ public class Member extends BaseEntity {
 
     private int age;
 
+    // 낙관적 락. 수정할때 where version = ? 로 확인해서 그 사이 다른 트랜잭션이 바꿨으면 OptimisticLockException
+    // 벌크 update 는 이걸 안 올려주기 때문에 쿼리에서 직접 version + 1 을 해야 한다.
+    @Version
+    private Long version;
+
+    // 팀 프록시는 default_batch_fetch_size 만큼 모아서 초기화된다. 따로 바꾸려면 Team 클래스에 @BatchSize 를 붙인다.
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "team_id")
     private Team team;
 
+    /* 팀의 members 컬렉션을 로딩하지 않는다. (EXTRA 지연로딩이라 add 는 쌓아두기만 한다) 대신 팀의 memberCount 를 같이 올리고 내린다.
+       그래서 팀 인원이 몇명이든 팀 이동은 member update 한번에 팀마다 member_count + ? 한번씩이다. (TeamMemberCountListener)
+       Team @Version 은 올라가지 않아서 같은 팀에 동시에 넣어도 충돌이 나지 않는다. */
     public void changeTeam(Team team) {
+        if (this.team != null) {
+            this.team.removeMember(this);
+        }
         this.team = team;
-        team.getMembers().add(this);
+        if (team != null) {
+            team.addMember(this);
+        }
+    }
+
+    // setTeam 으로 바꿔도 memberCount 가 맞도록 changeTeam 으로 보낸다. (롬복 setter 대신)
+    public void setTeam(Team team) {
+        changeTeam(team);
+    }
+
+    // 회원 삭제도 인원수에 반영한다. 벌크 delete (deleteAllInBatch 등) 는 여기를 안 타니까 따로 맞춰야 한다.
+    @PreRemove
+    void preRemove() {
+        if (team != null) {
+            team.removeMember(this);
+        }
     }
 
 
@@ -0,0 +1,46 @@
+package com.brunosong.data_jpa.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+/* 오래 수정되지 않은 회원을 옮겨두는 보관 테이블. (MemberArchiveService)
+ * member 테이블과 인덱스를 자주 쓰는 행만큼만 유지하려고 분리한다. 여기는 id 로 찾는것 말고는 조회하지 않아서 PK 말고 인덱스가 없다.
+ * 팀은 연관관계 없이 id 만 들고 있다. (팀 members 컬렉션에 안 보이고, 옮길때 팀 memberCount 에서 뺀다)
+ * 읽기 전용이다. (@Immutable, 바꿔도 update 가 안 나간다) 보관된 회원을 고치려면 member 로 되돌려야 한다.
+ * */
+@Entity
+@Immutable
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class MemberArchive {
+
+    @Id
+    @Column(name = "member_id")
+    private Long id;
+
+    private String username;
+
+    private int age;
+
+    @Column(name = "team_id")
+    private Long teamId;
+
+    private Long version;
+
+    private LocalDateTime createDate;
+
+    private LocalDateTime lastModifiedDate;
+
+    private String createdBy;
+
+    private String lastModifyBy;
+
+    private LocalDateTime archivedDate;
+}
@@ -0,0 +1,37 @@
+package com.brunosong.data_jpa.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/* 삭제된 회원 기록. 행이 없어지면 변경 피드 (lastModifiedDate 이후 조회) 에 안 잡히니까 삭제 시각을 따로 남긴다.
+ * MemberTombstoneListener 가 회원 delete 와 같은 트랜잭션에서 넣는다. 회원 id 는 다시 쓰이지 않아서 그대로 키로 쓴다.
+ * */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Table(indexes = @Index(name = "idx_member_tombstone_deleted_id", columnList = "deleted_date, member_id"))   // 변경 피드 (deletedDate, id) 순서
+public class MemberTombstone {
+
+    @Id
+    @Column(name = "member_id")
+    private Long memberId;
+
+    private String username;
+
+    @Column(name = "deleted_date", nullable = false)
+    private LocalDateTime deletedDate;
+
+    public MemberTombstone(Long memberId, String username, LocalDateTime deletedDate) {
+        this.memberId = memberId;
+        this.username = username;
+        this.deletedDate = deletedDate;
+    }
+}
@@ -0,0 +1,40 @@
+package com.brunosong.data_jpa.entity;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+
+/* 회원이 삭제되면 member_tombstone 에 한줄 남긴다. (em.remove / deleteById / 연관관계 orphan 삭제 등 하이버네이트가 지우는 경우 전부)
+ * flush 도중에 불리기 때문에 persist 하지 않고 같은 커넥션으로 바로 insert 한다. 그래서 회원 delete 와 같이 커밋/롤백 된다.
+ * JPQL / 네이티브 벌크 delete, deleteAllInBatch 는 이벤트가 없어서 여기를 안 탄다. 그런 경우는 툼스톤도 직접 넣어야 한다.
+ * 시각은 lastModifiedDate 와 같이 AuditContext (트랜잭션 시작 시각) 를 쓴다.
+ * */
+public class MemberTombstoneListener implements PostDeleteEventListener {
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+        Member member = (Member) event.getEntity();
+        Timestamp deletedDate = Timestamp.valueOf(AuditContext.current().now());
+
+        event.getSession().doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "insert into member_tombstone (member_id, username, deleted_date) values (?, ?, ?)")) {
+                insert.setLong(1, (Long) event.getId());
+                insert.setString(2, member.getUsername());
+                insert.setTimestamp(3, deletedDate);
+                insert.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
@@ -4,29 +4,76 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
+import org.hibernate.annotations.OptimisticLock;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))   // findFirstByName, 벌크 등록할때 팀 이름으로 찾는다.
 public class Team extends BaseEntity {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq")
+    @GenericGenerator(name = "team_seq", strategy = "com.brunosong.data_jpa.entity.ConfigurableSequenceGenerator",
+            parameters = {
+                    @Parameter(name = "sequence_name", value = "team_seq"),
+                    @Parameter(name = "increment_size", value = "50")
+            })
     @Column(name = "team_id")
     private Long id;
 
     private String name;
 
+    @Version
+    private Long version;
+
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team.members")   // 컬렉션은 회원 id 목록만 캐시된다.
+    // 팀마다 회원이 많을수 있어서 컬렉션은 전역 default_batch_fetch_size 보다 적게 (팀 20개씩) 가져온다.
+    // EXTRA : size() 는 count 쿼리, contains() 는 한건 조회로 처리하고 전체를 로딩하지 않는다. (반복문을 돌때만 전체 로딩)
+    @BatchSize(size = 20)
+    @LazyCollection(LazyCollectionOption.EXTRA)
     @OneToMany(fetch = FetchType.LAZY , mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
+    // 회원 수를 매번 count 하지 않도록 따로 들고 있는다. Member.changeTeam 에서 맞춘다.
+    // DB 에는 이 값을 그대로 쓰지 않고 TeamMemberCountListener 가 member_count + ? 로 더한다. (동시에 넣어도 잃어버리지 않고 @Version 충돌 X)
+    @Setter(AccessLevel.NONE)
+    @OptimisticLock(excluded = true)
+    @ColumnDefault("0")
+    @Column(insertable = false, updatable = false)
+    private int memberCount;
+
     public Team(String name) {
         this.name = name;
     }
 
+    void addMember(Member member) {
+        members.add(member);
+        memberCount++;
+    }
+
+    // 로딩 안 된 컬렉션에서 remove 하면 전체를 읽어야 해서, 로딩 된 경우에만 컬렉션에서 뺀다. (DB 는 member.team_id 만 보면 된다)
+    void removeMember(Member member) {
+        if (Hibernate.isInitialized(members)) {
+            members.remove(member);
+        }
+        memberCount--;
+    }
+
 }
@@ -0,0 +1,147 @@
+package com.brunosong.data_jpa.entity;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* team.member_count 를 읽어서 다시 쓰지 않고 flush 가 끝날때 팀마다 한번
+ *
+ *   update team set member_count = member_count + ? where team_id = ?
+ *
+ * 로 더하고 뺀다. 같은 팀에 동시에 회원을 넣어도 값을 잃어버리지 않고 Team @Version 도 올라가지 않는다. (Team.memberCount 는 insert / update 에서 빠진다)
+ * 회원 insert (+1), 팀 변경 (예전 팀 -1, 새 팀 +1), delete (-1) 를 세션마다 모았다가 flush (자동 flush, 커밋 전 flush 포함) 뒤에 반영한다.
+ * 엔티티의 memberCount 는 같은 세션에서 보이는 값이 맞도록 changeTeam 에서 그대로 올리고 내린다.
+ *
+ * 바뀐 팀은 2차 캐시에서 바로 한번, 트랜잭션이 끝나고 한번 더 뺀다. (update 를 하이버네이트가 모르니까)
+ * JPQL / 네이티브 벌크 insert, delete 는 이벤트가 없어서 여기를 안 탄다. 그런 경우는 같은 update 로 직접 맞춘다. (MemberArchiveService)
+ * */
+public class TeamMemberCountListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+        FlushEventListener, AutoFlushEventListener {
+
+    private final Map<EventSource, Pending> pending = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            add(event.getSession(), team(event.getPersister(), event.getState()), 1);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        // oldState 가 없으면 (detached 엔티티를 session.update) 예전 팀을 알수 없다. 이 프로젝트는 merge / 변경 감지만 쓴다.
+        if (!(event.getEntity() instanceof Member) || event.getOldState() == null) {
+            return;
+        }
+        Team before = team(event.getPersister(), event.getOldState());
+        Team after = team(event.getPersister(), event.getState());
+        Long beforeId = teamId(event.getSession(), before);
+        Long afterId = teamId(event.getSession(), after);
+        if (!Objects.equals(beforeId, afterId)) {
+            add(event.getSession(), before, -1);
+            add(event.getSession(), after, 1);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            add(event.getSession(), team(event.getPersister(), event.getDeletedState()), -1);
+        }
+    }
+
+    @Override
+    public void onFlush(FlushEvent event) {
+        apply(event.getSession());
+    }
+
+    @Override
+    public void onAutoFlush(AutoFlushEvent event) {
+        apply(event.getSession());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void add(EventSource session, Team team, int delta) {
+        Long teamId = teamId(session, team);
+        if (teamId == null) {
+            return;
+        }
+        pending.computeIfAbsent(session, key -> {
+            Pending created = new Pending();
+            // 트랜잭션이 끝나면 (롤백 포함) 남은 값을 버리고 바뀐 팀을 2차 캐시에서 한번 더 뺀다.
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> {
+                pending.remove(session);
+                created.touched.forEach(id -> s.getFactory().getCache().evictEntityData(Team.class, id));
+            });
+            return created;
+        }).deltas.merge(teamId, delta, Integer::sum);
+    }
+
+    private void apply(EventSource session) {
+        Pending current = pending.get(session);
+        if (current == null || current.deltas.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> deltas = new TreeMap<>(current.deltas);   // 팀 id 순서로 update 해서 트랜잭션끼리 데드락이 안 나게 한다.
+        current.deltas.clear();
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        session.doWork(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(
+                    "update team set member_count = member_count + ? where team_id = ?")) {
+                for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+                    update.setInt(1, entry.getValue());
+                    update.setLong(2, entry.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
+        });
+        current.touched.addAll(deltas.keySet());
+        deltas.keySet().forEach(id -> session.getFactory().getCache().evictEntityData(Team.class, id));
+    }
+
+    private static Team team(EntityPersister persister, Object[] state) {
+        return (Team) state[persister.getEntityMetamodel().getPropertyIndex("team")];
+    }
+
+    // 프록시는 초기화하지 않고 id 만 꺼낸다.
+    private static Long teamId(EventSource session, Team team) {
+        if (team == null) {
+            return null;
+        }
+        Object id = session.getContextEntityIdentifier(team);
+        return id != null ? (Long) id : team.getId();
+    }
+
+    private static final class Pending {
+        final Map<Long, Integer> deltas = new HashMap<>();
+        final Set<Long> touched = new HashSet<>();
+    }
+}
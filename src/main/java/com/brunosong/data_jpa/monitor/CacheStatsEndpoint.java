@@ -0,0 +1,63 @@
+package com.brunosong.data_jpa.monitor;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* GET /actuator/cachestats
+ * 2차 캐시 / 쿼리 캐시 / 쿼리 계획 캐시 hit, miss 확인용
+ * hibernate.generate_statistics 가 꺼져 있으면 (기본) 숫자가 쌓이지 않아서 enabled = false 만 돌려준다. */
+@Component
+@Endpoint(id = "cachestats")
+@RequiredArgsConstructor
+public class CacheStatsEndpoint {
+
+    private final EntityManagerFactory emf;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return Map.of("enabled", false);
+        }
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            regions.put(regionName, region(statistics.getCacheRegionStatistics(regionName)));
+        }
+
+        Map<String, Object> queryCache = new LinkedHashMap<>();
+        queryCache.put("hit", statistics.getQueryCacheHitCount());
+        queryCache.put("miss", statistics.getQueryCacheMissCount());
+        queryCache.put("put", statistics.getQueryCachePutCount());
+
+        // JPQL -> SQL 변환 결과 캐시. in 절 크기가 제각각이면 miss 가 계속 올라간다.
+        Map<String, Object> queryPlanCache = new LinkedHashMap<>();
+        queryPlanCache.put("hit", statistics.getQueryPlanCacheHitCount());
+        queryPlanCache.put("miss", statistics.getQueryPlanCacheMissCount());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", true);
+        result.put("secondLevelCache", regions);
+        result.put("queryCache", queryCache);
+        result.put("queryPlanCache", queryPlanCache);
+        return result;
+    }
+
+    private static Map<String, Object> region(CacheRegionStatistics region) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hit", region.getHitCount());
+        result.put("miss", region.getMissCount());
+        result.put("put", region.getPutCount());
+        result.put("elementsInMemory", region.getElementCountInMemory());
+        return result;
+    }
+}
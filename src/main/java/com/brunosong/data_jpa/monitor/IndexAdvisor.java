@@ -0,0 +1,107 @@
+package com.brunosong.data_jpa.monitor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/* 실행 계획에서 풀 스캔 (H2 tableScan, PostgreSQL Seq Scan, MySQL type=ALL) 이 보이면
+ * SQL 의 where 조건을 보고 인덱스를 제안한다. 하이버네이트가 만든 SQL (from member member0_ where member0_.username=?) 기준이다.
+ *
+ *   같다 (=, in) 조건 컬럼을 먼저, 범위 (<, >, between, like) 조건 컬럼은 하나만 뒤에 둔다. (범위 뒤 컬럼은 인덱스를 못 탄다)
+ * */
+public final class IndexAdvisor {
+
+    private static final Pattern TABLE_ALIAS = Pattern.compile("(?i)\\b(?:from|join)\\s+([\\w.]+)\\s+(?:as\\s+)?(\\w+)");
+    private static final Pattern CONDITION = Pattern.compile(
+            "(?i)\\b(\\w+)\\.(\\w+)\\s*(<=|>=|<>|!=|=|<|>|\\bin\\b|\\blike\\b|\\bbetween\\b)");
+    private static final Pattern WHERE_END = Pattern.compile("(?i)\\b(order\\s+by|group\\s+by|limit|offset|fetch|for\\s+update)\\b");
+
+    private static final Pattern H2_SCAN = Pattern.compile("(\\w+)\\.tableScan");
+    private static final Pattern POSTGRES_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+    private static final Pattern MYSQL_SCAN = Pattern.compile("(?i)table=(\\w+)[^\\n]*type=ALL");
+
+    private IndexAdvisor() {
+    }
+
+    public static boolean isTableScan(String plan) {
+        return !scannedTables(plan).isEmpty();
+    }
+
+    public static List<String> suggest(String sql, String plan) {
+        Set<String> scanned = scannedTables(plan);
+        if (scanned.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, String> tables = new LinkedHashMap<>();   // 별칭 -> 테이블
+        Matcher alias = TABLE_ALIAS.matcher(sql);
+        while (alias.find()) {
+            String table = alias.group(1);
+            tables.put(alias.group(2).toLowerCase(Locale.ROOT), table.substring(table.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT));
+        }
+
+        Map<String, Set<String>> equality = new LinkedHashMap<>();
+        Map<String, Set<String>> range = new LinkedHashMap<>();
+        Matcher condition = CONDITION.matcher(where(sql));
+        while (condition.find()) {
+            String table = tables.get(condition.group(1).toLowerCase(Locale.ROOT));
+            if (table == null || !(scanned.contains(table) || scanned.contains(condition.group(1).toLowerCase(Locale.ROOT)))) {
+                continue;
+            }
+            String column = condition.group(2).toLowerCase(Locale.ROOT);
+            String op = condition.group(3).toLowerCase(Locale.ROOT);
+            if (op.equals("=") || op.equals("in")) {
+                equality.computeIfAbsent(table, t -> new LinkedHashSet<>()).add(column);
+            } else if (!op.equals("<>") && !op.equals("!=")) {
+                range.computeIfAbsent(table, t -> new LinkedHashSet<>()).add(column);
+            }
+        }
+
+        List<String> suggestions = new ArrayList<>();
+        Set<String> indexed = new LinkedHashSet<>(equality.keySet());
+        indexed.addAll(range.keySet());
+        for (String table : indexed) {
+            List<String> columns = new ArrayList<>(equality.getOrDefault(table, new LinkedHashSet<>()));
+            for (String column : range.getOrDefault(table, new LinkedHashSet<>())) {
+                if (!columns.contains(column)) {
+                    columns.add(column);
+                    break;
+                }
+            }
+            suggestions.add("create index idx_" + table + "_" + String.join("_", columns)
+                    + " on " + table + " (" + String.join(", ", columns) + ")");
+        }
+        return suggestions;
+    }
+
+    private static String where(String sql) {
+        int start = sql.toLowerCase(Locale.ROOT).indexOf(" where ");
+        if (start < 0) {
+            return "";
+        }
+        String where = sql.substring(start);
+        Matcher end = WHERE_END.matcher(where);
+        return end.find() ? where.substring(0, end.start()) : where;
+    }
+
+    // 풀 스캔하는 테이블 (MySQL 은 별칭) 이름을 소문자로
+    private static Set<String> scannedTables(String plan) {
+        Set<String> tables = new LinkedHashSet<>();
+        if (plan == null) {
+            return tables;
+        }
+        for (Pattern pattern : new Pattern[]{H2_SCAN, POSTGRES_SCAN, MYSQL_SCAN}) {
+            Matcher matcher = pattern.matcher(plan);
+            while (matcher.find()) {
+                tables.add(matcher.group(1).toLowerCase(Locale.ROOT));
+            }
+        }
+        return tables;
+    }
+}
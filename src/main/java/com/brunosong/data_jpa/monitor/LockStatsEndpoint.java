@@ -0,0 +1,23 @@
+package com.brunosong.data_jpa.monitor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/* GET /actuator/lockstats
+ * 비관적 락 대기 시간 확인용 (LockWaitMetrics) */
+@Component
+@Endpoint(id = "lockstats")
+@RequiredArgsConstructor
+public class LockStatsEndpoint {
+
+    private final LockWaitMetrics lockWaitMetrics;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return lockWaitMetrics.snapshot();
+    }
+}
@@ -0,0 +1,49 @@
+package com.brunosong.data_jpa.monitor;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/* 락을 거는 조회에서 결과를 받을때까지 걸린 시간 (= 락 대기 시간 + 쿼리 시간) 을 모은다.
+   작업 큐 선점 (MemberWorkQueueService, claimMembers) 과 비관적 락 수정 (MemberAgeService, findLockByUsername) 을 같이 잰다.
+   SKIP LOCKED 로 바꾸고 나서 대기 시간이 줄었는지 여기서 확인한다. (/actuator/lockstats) */
+@Component
+public class LockWaitMetrics {
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder empty = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long waitNanos, int rowCount) {
+        acquisitions.increment();
+        rows.add(rowCount);
+        if (rowCount == 0) {
+            empty.increment();
+        }
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulate(waitNanos);
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        long count = acquisitions.sum();
+        long total = totalWaitNanos.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("acquisitions", count);
+        result.put("rows", rows.sum());
+        result.put("empty", empty.sum());
+        result.put("totalWaitMillis", TimeUnit.NANOSECONDS.toMillis(total));
+        result.put("avgWaitMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(total / count));
+        result.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        return result;
+    }
+}
@@ -0,0 +1,16 @@
+package com.brunosong.data_jpa.monitor;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class QueryCountConfig {
+
+    // 스프링 빈으로 만든 인스펙터를 그대로 하이버네이트에 넘긴다. (클래스 이름으로 넘기면 설정값을 못 받는다)
+    @Bean
+    public HibernatePropertiesCustomizer queryCountInspectorCustomizer(QueryCountInspector queryCountInspector) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, queryCountInspector);
+    }
+}
@@ -0,0 +1,35 @@
+package com.brunosong.data_jpa.monitor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/* HTTP 요청 하나에서 나간 쿼리 수를 센다. 예산을 넘거나 같은 쿼리가 반복되면 경고 로그. */
+@Component
+@RequiredArgsConstructor
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final QueryCountInspector queryCountInspector;
+
+    @Value("${monitor.query.per-request-budget:30}")
+    private int requestBudget;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryCounter.Scope scope = QueryCounter.open(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            scope.close();
+            queryCountInspector.report(scope, requestBudget);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.brunosong.data_jpa.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+/* 하이버네이트가 JDBC 로 보내기 전의 SQL 을 받아서 QueryCounter 에 센다. SQL 은 그대로 돌려준다.
+ * 트랜잭션 안에서 처음 SQL 이 나갈때 트랜잭션 스코프를 열고, 트랜잭션이 끝나면 예산 초과 / N+1 을 로그로 남긴다.
+ * */
+@Slf4j
+@Component
+public class QueryCountInspector implements StatementInspector {
+
+    private final int transactionBudget;
+    private final int repeatThreshold;
+
+    public QueryCountInspector(@Value("${monitor.query.per-transaction-budget:20}") int transactionBudget,
+                               @Value("${monitor.query.n-plus-one-threshold:3}") int repeatThreshold) {
+        this.transactionBudget = transactionBudget;
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        openTransactionScopeIfNeeded();
+        QueryCounter.record(sql);
+        return sql;
+    }
+
+    private void openTransactionScopeIfNeeded() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        QueryCounter.Scope scope = QueryCounter.open("tx " + (name == null ? "" : name));
+        TransactionSynchronizationManager.bindResource(this, scope);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(QueryCountInspector.this);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(QueryCountInspector.this, scope);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(QueryCountInspector.this);
+                scope.close();
+                report(scope, transactionBudget);
+            }
+        });
+    }
+
+    void report(QueryCounter.Scope scope, int budget) {
+        if (scope.count() > budget) {
+            log.warn("{} : 쿼리 예산({}) 초과", scope, budget);
+        }
+        Map<String, Integer> repeated = scope.repeatedStatements(repeatThreshold);
+        if (!repeated.isEmpty()) {
+            repeated.forEach((sql, count) -> log.warn("{} : N+1 의심 - 같은 쿼리가 {} 번 실행됨 : {}", scope.getName(), count, sql));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.brunosong.data_jpa.monitor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/* 스레드마다 실행된 SQL 을 세는 카운터. QueryCountInspector 가 하이버네이트가 만드는 SQL 을 전부 record 로 넘겨준다.
+ * 파라미터는 ? 로 바인딩 되기 때문에 같은 SQL 이 여러번 나왔다는건 보통 N+1 이라는 뜻이다.
+ *
+ *   try (QueryCounter.Scope scope = QueryCounter.open("findMemberFetchJoin")) {
+ *       repository.findMemberFetchJoin();
+ *       scope.assertAtMost(1);
+ *   }
+ * */
+public final class QueryCounter {
+
+    // 스코프가 열린 스레드에만 목록이 생긴다. (SQL 을 실행하는 모든 스레드에 빈 목록이 남지 않게 withInitial 을 쓰지 않는다)
+    private static final ThreadLocal<List<Scope>> SCOPES = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    public static Scope open(String name) {
+        Scope scope = new Scope(name);
+        List<Scope> scopes = SCOPES.get();
+        if (scopes == null) {
+            scopes = new ArrayList<>();
+            SCOPES.set(scopes);
+        }
+        scopes.add(scope);
+        return scope;
+    }
+
+    // 열려있는 모든 스코프에 같이 센다. (요청 > 트랜잭션 > 테스트 처럼 겹쳐서 열릴수 있다)
+    static void record(String sql) {
+        List<Scope> scopes = SCOPES.get();
+        if (scopes == null) {
+            return;
+        }
+        for (int i = 0; i < scopes.size(); i++) {
+            scopes.get(i).add(sql);
+        }
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private final String name;
+        private final Map<String, Integer> statements = new LinkedHashMap<>();
+        private int count;
+
+        private Scope(String name) {
+            this.name = name;
+        }
+
+        private void add(String sql) {
+            count++;
+            statements.merge(sql, 1, Integer::sum);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /* threshold 번 이상 반복된 select (N+1 의심). insert / update 배치나 시퀀스 호출은 반복되는게 정상이라 뺀다. */
+        public Map<String, Integer> repeatedStatements(int threshold) {
+            return statements.entrySet().stream()
+                    .filter(e -> e.getValue() >= threshold)
+                    .filter(e -> isSelect(e.getKey()))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+        }
+
+        private static boolean isSelect(String sql) {
+            String trimmed = sql.trim();
+            return trimmed.regionMatches(true, 0, "select", 0, 6) || trimmed.regionMatches(true, 0, "with", 0, 4);
+        }
+
+        public void assertAtMost(int maxQueries) {
+            if (count > maxQueries) {
+                throw new AssertionError("[" + name + "] 쿼리는 최대 " + maxQueries + " 번이어야 하는데 " + count + " 번 실행되었습니다. "
+                        + statements);
+            }
+        }
+
+        public void assertNoRepeatedStatements() {
+            Map<String, Integer> repeated = repeatedStatements(2);
+            if (!repeated.isEmpty()) {
+                throw new AssertionError("[" + name + "] 같은 쿼리가 반복 실행되었습니다. (N+1 의심) " + repeated);
+            }
+        }
+
+        @Override
+        public void close() {
+            List<Scope> scopes = SCOPES.get();
+            if (scopes == null) {
+                return;
+            }
+            scopes.remove(this);
+            // 마지막 스코프가 닫히면 스레드에서 목록을 지운다. (풀 스레드에 남지 않게)
+            if (scopes.isEmpty()) {
+                SCOPES.remove();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "[" + name + "] " + count + " queries";
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.brunosong.data_jpa.monitor;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/* 지금 스레드에서 실행중인 리포지토리 메소드 (MemberRepository.findByNames 같은) 를 기억한다.
+ * JDBC 단에서 (SlowQueryListener) 이 SQL 이 어느 메소드에서 나왔는지 알기 위해서 쓴다.
+ * 리포지토리 안에서 다른 리포지토리를 부르면 안쪽 메소드가 잡히고, 끝나면 바깥 메소드로 돌아온다.
+ * */
+public class RepositoryMethodTracker implements MethodInterceptor {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private final String repository;
+
+    public RepositoryMethodTracker(String repository) {
+        this.repository = repository;
+    }
+
+    /* 리포지토리 밖에서 나간 SQL (flush, 지연로딩 등) 이면 null */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        String previous = CURRENT.get();
+        CURRENT.set(repository + "." + invocation.getMethod().getName());
+        try {
+            return invocation.proceed();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
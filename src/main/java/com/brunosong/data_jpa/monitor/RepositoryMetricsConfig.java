@@ -0,0 +1,39 @@
+package com.brunosong.data_jpa.monitor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+/* 모든 리포지토리 (쿼리 메소드, @Query, MemberRepositoryCustom 같은 프래그먼트 포함) 에 결과 건수 인터셉터를 붙인다.
+ * 호출 시간은 스프링 부트 actuator 가 기본으로 잰다. 설정은 application.yml 의 management.metrics.data.repository
+ *
+ *   /actuator/repositories                                    메소드별 요약 (DB 시간 많이 쓰는 순)
+ *   /actuator/metrics/spring.data.repository.invocations?tag=method:findByNames
+ *   /actuator/metrics/repository.result.size?tag=method:findByNames
+ * */
+@Configuration
+@ConditionalOnProperty(prefix = "monitor.repository", name = "result-size", havingValue = "true", matchIfMissing = true)
+public class RepositoryMetricsConfig {
+
+    // BeanPostProcessor 라서 static 으로 등록하고 MeterRegistry 는 처음 기록할때 꺼낸다.
+    @Bean
+    public static BeanPostProcessor repositoryResultSizeBeanPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof RepositoryFactoryBeanSupport) {
+                    ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                            factory.addRepositoryProxyPostProcessor((proxyFactory, information) ->
+                                    proxyFactory.addAdvice(new RepositoryResultSizeInterceptor(
+                                            information.getRepositoryInterface().getSimpleName(), meterRegistry))));
+                }
+                return bean;
+            }
+        };
+    }
+}
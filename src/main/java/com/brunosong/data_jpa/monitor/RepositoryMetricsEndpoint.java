@@ -0,0 +1,96 @@
+package com.brunosong.data_jpa.monitor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/* GET /actuator/repositories
+ * 리포지토리 메소드별로 호출 수, 전체 시간, 최대 시간, 에러 수, 평균 결과 건수를 모아서 전체 시간이 큰 순서로 보여준다.
+ * */
+@Component
+@Endpoint(id = "repositories")
+@RequiredArgsConstructor
+public class RepositoryMetricsEndpoint {
+
+    static final String INVOCATIONS = "spring.data.repository.invocations";
+
+    private final MeterRegistry meterRegistry;
+
+    @ReadOperation
+    public List<Map<String, Object>> repositories() {
+        Map<String, MethodStats> stats = new LinkedHashMap<>();
+
+        // 시간은 state (SUCCESS, ERROR ...) / exception 태그 별로 따로 쌓여서 메소드 단위로 합친다.
+        for (Timer timer : meterRegistry.find(INVOCATIONS).timers()) {
+            MethodStats method = stats.computeIfAbsent(key(timer.getId().getTag("repository"), timer.getId().getTag("method")),
+                    k -> new MethodStats(timer.getId().getTag("repository"), timer.getId().getTag("method")));
+            method.count += timer.count();
+            method.totalNanos += timer.totalTime(TimeUnit.NANOSECONDS);
+            method.maxNanos = Math.max(method.maxNanos, timer.max(TimeUnit.NANOSECONDS));
+            if (!"SUCCESS".equals(timer.getId().getTag("state"))) {
+                method.errors += timer.count();
+            }
+        }
+        for (DistributionSummary summary : meterRegistry.find(RepositoryResultSizeInterceptor.METRIC_NAME).summaries()) {
+            MethodStats method = stats.get(key(summary.getId().getTag("repository"), summary.getId().getTag("method")));
+            if (method != null) {
+                method.resultSizeMean = summary.mean();
+                method.resultSizeMax = summary.max();
+            }
+        }
+
+        List<MethodStats> sorted = new ArrayList<>(stats.values());
+        sorted.sort(Comparator.comparingDouble((MethodStats m) -> m.totalNanos).reversed());
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (MethodStats method : sorted) {
+            result.add(method.toMap());
+        }
+        return result;
+    }
+
+    private static String key(String repository, String method) {
+        return repository + "." + method;
+    }
+
+    private static class MethodStats {
+        final String repository;
+        final String method;
+        long count;
+        long errors;
+        double totalNanos;
+        double maxNanos;
+        double resultSizeMean = Double.NaN;
+        double resultSizeMax = Double.NaN;
+
+        MethodStats(String repository, String method) {
+            this.repository = repository;
+            this.method = method;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("repository", repository);
+            map.put("method", method);
+            map.put("count", count);
+            map.put("errors", errors);
+            map.put("totalMillis", totalNanos / 1_000_000);
+            map.put("avgMicros", count == 0 ? 0 : totalNanos / count / 1_000);
+            map.put("maxMillis", maxNanos / 1_000_000);
+            map.put("resultSizeMean", Double.isNaN(resultSizeMean) ? null : resultSizeMean);
+            map.put("resultSizeMax", Double.isNaN(resultSizeMax) ? null : resultSizeMax);
+            return map;
+        }
+    }
+}
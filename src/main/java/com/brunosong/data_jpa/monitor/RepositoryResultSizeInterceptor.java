@@ -0,0 +1,91 @@
+package com.brunosong.data_jpa.monitor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Slice;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* 리포지토리 메소드가 돌려준 결과 건수를 메소드별로 기록한다. (repository.result.size)
+ * 시간 / 호출 수 / 에러는 스프링 부트가 RepositoryMethodInvocationListener 로 이미 잰다. (spring.data.repository.invocations)
+ * 리스너는 반환값을 못 보기 때문에 건수만 여기서 따로 잰다.
+ *
+ * 메소드마다 DistributionSummary 를 한번만 만들어서 들고 있어서 호출할때는 맵 조회 한번뿐이다. (태그 객체를 새로 안 만든다)
+ * Stream, 숫자 (count, 벌크 update) 처럼 건수를 알수 없거나 의미가 다른 반환값은 기록하지 않는다.
+ * */
+public class RepositoryResultSizeInterceptor implements MethodInterceptor {
+
+    public static final String METRIC_NAME = "repository.result.size";
+
+    private final String repository;
+    private final ObjectProvider<MeterRegistry> registry;
+    private final Map<Method, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public RepositoryResultSizeInterceptor(String repository, ObjectProvider<MeterRegistry> registry) {
+        this.repository = repository;
+        this.registry = registry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+
+        Method method = invocation.getMethod();
+        if (countable(method.getReturnType())) {
+            long size = sizeOf(result);
+            if (size >= 0) {
+                summary(method).record(size);
+            }
+        }
+        return result;
+    }
+
+    private static boolean countable(Class<?> returnType) {
+        return !returnType.isPrimitive() && !Number.class.isAssignableFrom(returnType) && returnType != Boolean.class;
+    }
+
+    private static long sizeOf(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof CompletableFuture) {
+            // @Async 메소드는 실행기 스레드 안에서 이미 끝난 결과를 감싸서 돌려준다.
+            CompletableFuture<?> future = (CompletableFuture<?>) result;
+            return future.isDone() && !future.isCompletedExceptionally() ? sizeOf(future.getNow(null)) : -1;
+        }
+        if (result instanceof Iterable || result instanceof java.util.stream.BaseStream) {
+            return -1;
+        }
+        return 1;
+    }
+
+    private DistributionSummary summary(Method method) {
+        DistributionSummary summary = summaries.get(method);
+        if (summary == null) {
+            summary = summaries.computeIfAbsent(method, m -> DistributionSummary.builder(METRIC_NAME)
+                    .description("repository method result size")
+                    .baseUnit("rows")
+                    .tag("repository", repository)
+                    .tag("method", m.getName())
+                    .register(registry.getObject()));
+        }
+        return summary;
+    }
+}
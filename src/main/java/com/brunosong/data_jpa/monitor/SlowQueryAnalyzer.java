@@ -0,0 +1,127 @@
+package com.brunosong.data_jpa.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/* 느린 SQL 을 모아서 처음 보는 SQL 이면 EXPLAIN 을 떠서 실행 계획과 인덱스 제안 (IndexAdvisor) 을 남긴다.
+ *
+ * EXPLAIN 은 요청 스레드 / 트랜잭션과 상관없이 별도 스레드에서 새 커넥션으로 한다. 큐가 차면 그냥 버린다. (측정 때문에 느려지면 안되니까)
+ * 값이 들어간 SQL 문자열 (p6spy sqlWithValues) 은 이스케이프가 DB 마다 달라서 (MySQL 의 \' 등) 실행하지 않고, 리포트에 남기지도 않는다.
+ * 원래 SQL 을 "explain " 뒤에 붙여서 prepare 하고 캡처한 바인딩 값을 그대로 바인딩한다. 바인딩 값을 못 읽었으면 EXPLAIN 하지 않는다.
+ * 바인딩 값은 EXPLAIN 에만 쓰고 리포트에서 지운다. (SlowQueryReport 참고)
+ * SQL 종류가 max-reports 를 넘으면 새로운 SQL 은 더 받지 않는다.
+ * */
+@Slf4j
+@Component
+public class SlowQueryAnalyzer implements DisposableBean {
+
+    private final ObjectProvider<DataSource> dataSource;
+    private final int maxReports;
+    private final Map<String, SlowQueryReport> reports = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(100), runnable -> {
+                Thread thread = new Thread(runnable, "slow-query-explain");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    // DataSource 는 p6spy 가 이 빈을 쓰는 리스너로 감싸기 때문에 바로 주입받으면 순환 참조가 된다.
+    public SlowQueryAnalyzer(ObjectProvider<DataSource> dataSource,
+                             @Value("${monitor.slow-query.max-reports:200}") int maxReports) {
+        this.dataSource = dataSource;
+        this.maxReports = maxReports;
+    }
+
+    public void submit(String sql, List<Object> parameters, long elapsedNanos, String repositoryMethod) {
+        SlowQueryReport report = reports.get(sql);
+        if (report == null) {
+            if (reports.size() >= maxReports) {
+                return;
+            }
+            report = reports.computeIfAbsent(sql, SlowQueryReport::new);
+        }
+        if (report.record(parameters, elapsedNanos, repositoryMethod)) {
+            SlowQueryReport first = report;
+            executor.execute(() -> explain(first));
+        }
+    }
+
+    public Collection<SlowQueryReport> getReports() {
+        return reports.values();
+    }
+
+    public void clear() {
+        reports.clear();
+    }
+
+    private void explain(SlowQueryReport report) {
+        List<Object> parameters = report.takeParameters();
+        if (parameters == null) {
+            report.explained("EXPLAIN 생략 : 바인딩 값을 읽지 못했습니다.", new ArrayList<>());
+            return;
+        }
+        String plan;
+        try (Connection connection = dataSource.getObject().getConnection();
+             PreparedStatement statement = connection.prepareStatement("explain " + report.getSql())) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                plan = planText(rs);
+            }
+        } catch (SQLException e) {
+            log.debug("EXPLAIN 실패 : {}", report.getSql(), e);
+            report.explained("EXPLAIN 실패 : " + e.getMessage(), new ArrayList<>());
+            return;
+        }
+
+        List<String> suggestions = IndexAdvisor.suggest(report.getSql(), plan);
+        report.explained(plan, suggestions);
+        if (!suggestions.isEmpty()) {
+            log.warn("느린 쿼리 풀 스캔 {} {}ms : {}\n  인덱스 제안 : {}",
+                    report.getRepositoryMethods(), report.getMaxMillis(), report.getSql(), suggestions);
+        }
+    }
+
+    // 컬럼이 하나면 (H2, PostgreSQL) 값만, 여러개면 (MySQL) 컬럼=값 으로 한 행을 한 줄로
+    private static String planText(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        StringBuilder plan = new StringBuilder();
+        while (rs.next()) {
+            if (plan.length() > 0) {
+                plan.append('\n');
+            }
+            if (meta.getColumnCount() == 1) {
+                plan.append(rs.getString(1));
+                continue;
+            }
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                plan.append(meta.getColumnLabel(i)).append('=').append(rs.getString(i)).append(' ');
+            }
+        }
+        return plan.toString();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,28 @@
+package com.brunosong.data_jpa.monitor;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+@Configuration
+public class SlowQueryConfig {
+
+    // 모든 리포지토리 호출에 메소드 이름을 스레드에 남기는 인터셉터를 붙인다. (느린 쿼리가 어디서 나왔는지)
+    @Bean
+    public static BeanPostProcessor repositoryMethodTrackerBeanPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof RepositoryFactoryBeanSupport) {
+                    ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                            factory.addRepositoryProxyPostProcessor((proxyFactory, information) ->
+                                    proxyFactory.addAdvice(new RepositoryMethodTracker(
+                                            information.getRepositoryInterface().getSimpleName()))));
+                }
+                return bean;
+            }
+        };
+    }
+}
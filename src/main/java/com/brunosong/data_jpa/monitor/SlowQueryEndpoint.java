@@ -0,0 +1,34 @@
+package com.brunosong.data_jpa.monitor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/*  GET    /actuator/slowqueries   느린 SQL 별 실행 계획, 리포지토리 메소드, 인덱스 제안 (느린 순)
+ *  DELETE /actuator/slowqueries   비우기
+ * */
+@Component
+@Endpoint(id = "slowqueries")
+@RequiredArgsConstructor
+public class SlowQueryEndpoint {
+
+    private final SlowQueryAnalyzer slowQueryAnalyzer;
+
+    @ReadOperation
+    public List<SlowQueryReport> reports() {
+        List<SlowQueryReport> reports = new ArrayList<>(slowQueryAnalyzer.getReports());
+        reports.sort(Comparator.comparingLong(SlowQueryReport::getMaxMillis).reversed());
+        return reports;
+    }
+
+    @DeleteOperation
+    public void clear() {
+        slowQueryAnalyzer.clear();
+    }
+}
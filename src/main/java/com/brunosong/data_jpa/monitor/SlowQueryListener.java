@@ -0,0 +1,89 @@
+package com.brunosong.data_jpa.monitor;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/* threshold 보다 오래 걸린 select 를 SlowQueryAnalyzer 로 넘긴다. 어느 리포지토리 메소드에서 나왔는지도 같이.
+ * EXPLAIN 은 값이 들어간 SQL 문자열이 아니라 원래 SQL 에 바인딩 값을 다시 바인딩해서 뜬다. (값 문자열 이스케이프를 믿지 않는다)
+ * */
+@Slf4j
+@Component
+public class SlowQueryListener extends SimpleJdbcEventListener {
+
+    // PreparedStatementInformation.getParameterValues 가 protected 라서 리플렉션으로 읽는다. 느린 쿼리일때만 부른다.
+    private static final Method PARAMETER_VALUES = parameterValuesMethod();
+
+    private final SlowQueryAnalyzer slowQueryAnalyzer;
+    private final long thresholdNanos;
+
+    public SlowQueryListener(SlowQueryAnalyzer slowQueryAnalyzer,
+                             @Value("${monitor.slow-query.threshold:200ms}") Duration threshold) {
+        this.slowQueryAnalyzer = slowQueryAnalyzer;
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (timeElapsedNanos < thresholdNanos || e != null) {
+            return;
+        }
+        String sql = statementInformation.getSql();
+        if (!isSelect(sql)) {
+            return;
+        }
+        slowQueryAnalyzer.submit(sql, parameters(statementInformation), timeElapsedNanos, RepositoryMethodTracker.current());
+    }
+
+    /* 바인딩 값 (1번 파라미터부터 순서대로). 일반 Statement 는 값이 SQL 에 들어있어서 빈 목록, 읽지 못하면 null */
+    @SuppressWarnings("unchecked")
+    static List<Object> parameters(StatementInformation statementInformation) {
+        if (!(statementInformation instanceof PreparedStatementInformation)) {
+            return new ArrayList<>();
+        }
+        if (PARAMETER_VALUES == null) {
+            return null;
+        }
+        try {
+            Map<Integer, com.p6spy.engine.common.Value> values =
+                    new TreeMap<>((Map<Integer, com.p6spy.engine.common.Value>) PARAMETER_VALUES.invoke(statementInformation));
+            List<Object> parameters = new ArrayList<>(values.size());
+            for (com.p6spy.engine.common.Value value : values.values()) {
+                parameters.add(value == null ? null : value.getValue());
+            }
+            return parameters;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("바인딩 값을 읽지 못했습니다.", e);
+            return null;
+        }
+    }
+
+    private static Method parameterValuesMethod() {
+        try {
+            Method method = PreparedStatementInformation.class.getDeclaredMethod("getParameterValues");
+            method.setAccessible(true);
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean isSelect(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        String trimmed = sql.trim();
+        return trimmed.regionMatches(true, 0, "select", 0, 6) || trimmed.regionMatches(true, 0, "with", 0, 4);
+    }
+}
@@ -0,0 +1,75 @@
+package com.brunosong.data_jpa.monitor;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/* 느린 SQL 한 종류 (파라미터를 뺀 SQL 기준) 에 대한 기록. 실행 계획은 처음 한번만 뜬다.
+ * actuator (/actuator/slowqueries) 로 그대로 나가기 때문에 바인딩 값 (username 같은 사용자 데이터) 은 보여주지 않는다.
+ * 값은 EXPLAIN 할 때까지만 들고 있다가 버리고, 리포트에는 타입만 남긴다. 실행 계획에 찍힌 문자열 값도 가린다.
+ * */
+@Getter
+public class SlowQueryReport {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private final String sql;
+    @Getter(AccessLevel.NONE)
+    private List<Object> parameters;        // 처음 기록된 바인딩 값. EXPLAIN 에 바인딩하고 나면 버린다. (밖으로 내보내지 않는다)
+    private List<String> parameterTypes;    // 바인딩 값 대신 보여주는 타입 (null 이면 값을 읽지 못한 것)
+    private final Set<String> repositoryMethods = new LinkedHashSet<>();
+    private long count;
+    private long maxMillis;
+    private long lastMillis;
+    private String plan;
+    private boolean tableScan;
+    private List<String> suggestions = new ArrayList<>();
+
+    public SlowQueryReport(String sql) {
+        this.sql = sql;
+    }
+
+    /* 처음 기록된 거면 true (이때 EXPLAIN 한다) */
+    synchronized boolean record(List<Object> parameters, long elapsedNanos, String repositoryMethod) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        count++;
+        lastMillis = millis;
+        maxMillis = Math.max(maxMillis, millis);
+        if (repositoryMethod != null) {
+            repositoryMethods.add(repositoryMethod);
+        }
+        if (count == 1) {
+            this.parameters = parameters;
+            this.parameterTypes = parameters == null ? null : parameters.stream()
+                    .map(value -> value == null ? "null" : value.getClass().getSimpleName())
+                    .collect(Collectors.toList());
+            return true;
+        }
+        return false;
+    }
+
+    /* EXPLAIN 용 바인딩 값. 한번 꺼내면 리포트에서는 지운다. */
+    synchronized List<Object> takeParameters() {
+        List<Object> taken = parameters;
+        parameters = null;
+        return taken;
+    }
+
+    // PostgreSQL 등은 실행 계획에 바인딩한 값이 그대로 찍히기 때문에 문자열 값은 '?' 로 가린다.
+    synchronized void explained(String plan, List<String> suggestions) {
+        this.plan = STRING_LITERAL.matcher(plan).replaceAll("'?'");
+        this.tableScan = IndexAdvisor.isTableScan(plan);
+        this.suggestions = suggestions;
+    }
+
+    public synchronized Set<String> getRepositoryMethods() {
+        return new LinkedHashSet<>(repositoryMethods);
+    }
+}
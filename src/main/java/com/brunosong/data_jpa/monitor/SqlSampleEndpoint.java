@@ -0,0 +1,49 @@
+package com.brunosong.data_jpa.monitor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*  GET    /actuator/sql?limit=100&slowOnly=true   버퍼에 남은 SQL (최신 순)
+ *  POST   /actuator/sql  {"debug": true}          모든 SQL 을 로그로 찍기 켜고 끄기
+ *  DELETE /actuator/sql                           버퍼 비우기
+ * */
+@Component
+@Endpoint(id = "sql")
+@RequiredArgsConstructor
+public class SqlSampleEndpoint {
+
+    private final SqlSampleListener sqlSampleListener;
+
+    @ReadOperation
+    public Map<String, Object> samples(@Nullable Integer limit, @Nullable Boolean slowOnly) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("debug", sqlSampleListener.isDebug());
+        result.put("bufferSize", sqlSampleListener.getBufferSize());
+        result.put("sampleRate", sqlSampleListener.getSampleRate());
+        result.put("slowThresholdMillis", sqlSampleListener.getSlowThresholdMillis());
+        result.put("recorded", sqlSampleListener.getRecorded());
+        result.put("samples", sqlSampleListener.samples(limit == null ? 100 : limit, slowOnly != null && slowOnly));
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> debug(boolean debug) {
+        sqlSampleListener.setDebug(debug);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("debug", sqlSampleListener.isDebug());
+        return result;
+    }
+
+    @DeleteOperation
+    public void clear() {
+        sqlSampleListener.clear();
+    }
+}
@@ -0,0 +1,125 @@
+package com.brunosong.data_jpa.monitor;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* 매 SQL 을 로그로 찍는 대신 (show_sql, p6spy 로그) 일부만 골라서 고정 크기 메모리 버퍼에 넣는다.
+ *
+ *   - slow-threshold 보다 오래 걸렸거나 에러가 난 SQL 은 항상 파라미터까지 채워서 (getSqlWithValues) 남긴다.
+ *   - 나머지는 sample-rate 비율만큼만 파라미터 없이 (? 그대로) 남긴다. 문자열을 새로 만들지 않는다.
+ *   - 버퍼가 차면 제일 오래된 것부터 덮어쓴다. 락 없이 순번(AtomicLong) 으로 자리를 정한다.
+ *   - debug 를 켜면 (/actuator/sql) 모든 SQL 을 파라미터와 같이 로그로 찍는다. 장애 볼때만 잠깐 켠다.
+ * */
+@Slf4j
+@Component
+public class SqlSampleListener extends SimpleJdbcEventListener {
+
+    private final AtomicReferenceArray<SqlSample> buffer;
+    private final AtomicLong sequence = new AtomicLong();
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+    private volatile boolean debug;
+
+    public SqlSampleListener(@Value("${monitor.sql.buffer-size:1000}") int bufferSize,
+                             @Value("${monitor.sql.sample-rate:0.01}") double sampleRate,
+                             @Value("${monitor.sql.slow-threshold:200ms}") Duration slowThreshold) {
+        this.buffer = new AtomicReferenceArray<>(Math.max(1, bufferSize));
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (debug) {
+            log.info("{}ms | {}", TimeUnit.NANOSECONDS.toMillis(timeElapsedNanos), statementInformation.getSqlWithValues());
+        }
+
+        boolean slow = timeElapsedNanos >= slowThresholdNanos || e != null;
+        if (!slow && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+
+        String sql = slow ? statementInformation.getSqlWithValues() : statementInformation.getSql();
+        long seq = sequence.getAndIncrement();
+        buffer.set((int) (seq % buffer.length()), new SqlSample(seq, Instant.now(),
+                TimeUnit.NANOSECONDS.toMicros(timeElapsedNanos), slow, sql, e == null ? null : e.getMessage()));
+    }
+
+    /* 최신 순서로 limit 개. slowOnly 면 느린 SQL / 에러만 */
+    public List<SqlSample> samples(int limit, boolean slowOnly) {
+        List<SqlSample> result = new ArrayList<>();
+        long last = sequence.get() - 1;
+        for (long seq = last; seq >= 0 && seq > last - buffer.length() && result.size() < limit; seq--) {
+            SqlSample sample = buffer.get((int) (seq % buffer.length()));
+            // 그 사이 다른 스레드가 덮어썼으면 건너뛴다.
+            if (sample != null && sample.getSeq() == seq && (!slowOnly || sample.isSlow())) {
+                result.add(sample);
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < buffer.length(); i++) {
+            buffer.set(i, null);
+        }
+    }
+
+    public long getRecorded() {
+        return sequence.get();
+    }
+
+    public int getBufferSize() {
+        return buffer.length();
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+        log.warn("SQL debug 로그 {}", debug ? "켜짐" : "꺼짐");
+    }
+
+    @Getter
+    public static class SqlSample {
+        private final long seq;
+        private final Instant time;
+        private final long elapsedMicros;
+        private final boolean slow;
+        private final String sql;
+        private final String error;
+
+        SqlSample(long seq, Instant time, long elapsedMicros, boolean slow, String sql, String error) {
+            this.seq = seq;
+            this.time = time;
+            this.elapsedMicros = elapsedMicros;
+            this.slow = slow;
+            this.sql = sql;
+            this.error = error;
+        }
+    }
+}
@@ -1,23 +1,43 @@
 package com.brunosong.data_jpa.repository;
 
+import com.brunosong.data_jpa.config.AsyncConfig;
 import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.dto.MemberPageStamp;
+import com.brunosong.data_jpa.dto.MemberStamp;
 import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.entity.Team;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.LockModeType;
 import javax.persistence.QueryHint;
-import java.util.Collection;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface MemberRepository extends JpaRepository<Member,Long> , MemberRepositoryCustom {
 
+    // 조회가 많은 메소드는 쿼리 캐시를 건다. 결과로 id 만 캐시되고 엔티티는 2차 캐시(member 리전)에서 꺼낸다.
+    // member 테이블이 바뀌면 (벌크 연산 포함) 하이버네이트가 알아서 무효화 한다.
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
     List<Member> findByUsername(String username); //이걸 쿼리 메소드라고 한다.
 
+    /* 동적 프로젝션. 필요한 컬럼만 받을 때 타입을 넘긴다. (MemberSummary, MemberTeamView 같은 인터페이스 또는 MemberDto 같은 클래스)
+       프로젝션 프로퍼티만 select 하고 엔티티를 만들지 않아서 영속성 컨텍스트 / 스냅샷이 안 생긴다. Member.class 를 넘기면 엔티티로 받는다.
+       인터페이스는 행마다 프록시 + 맵이 생겨서 할당이 제일 적은건 클래스 DTO 다. (ProjectionBenchmark) */
+    <T> List<T> findByUsername(String username, Class<T> type);
+
+    <T> List<T> findListByUsername(String username, Class<T> type);
+
+    <T> Page<T> findByAge(int age, Pageable pageable, Class<T> type);
+
     /* 이름 다르게 하면 안된다. UsernameAndAgeGreaterThan 이게 조건절이라고 생각하면 된다. */
     /* 쿼리 메소드 필터 조건 스프링 데이터 JPA 공식 문서 참고: (https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#jpa.query-methods.query-creation */
     /* 모든게 다 되는건 아니다. */
@@ -29,23 +49,71 @@ public interface MemberRepository extends JpaRepository<Member,Long> , MemberRep
     @Query("select m.username from Member m")
     List<String> findUsername();
 
+    // 대량 조회용. List 대신 Stream 으로 받으면 fetch size 만큼씩 가져온다. 트랜잭션 안에서 try-with-resources 로 써야 한다.
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select m.username from Member m")
+    Stream<String> streamUsername();
+
     @Query("select new com.brunosong.data_jpa.dto.MemberDto(m.id ,m.username, t.name) from Member m join m.team t")
     List<MemberDto> findMemberDto();
 
-    @Query("select m from Member m where m.username in :names")
-    List<Member> findByNames(@Param("names") Collection<String> names);
+    /* 페이지 조회를 엔티티 대신 DTO 로 바로 받는다. 필요한 컬럼만 select 하고 팀 이름도 한번에 가져온다. (N+1 X)
+       팀이 없는 회원도 나와야 해서 left join. count 는 조인이 필요 없어서 따로 준다. */
+    @Query(value = "select new com.brunosong.data_jpa.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t",
+            countQuery = "select count(m) from Member m")
+    Page<MemberDto> findMemberDtoPage(Pageable pageable);
+
+    /* 조건부 GET (ETag / Last-Modified) 용 메타데이터 조회. 바뀐게 없으면 엔티티 로딩과 JSON 변환 없이 304 로 끝난다. */
+    @Query("select m.lastModifiedDate as lastModifiedDate, m.version as version from Member m where m.id = :id")
+    Optional<MemberStamp> findStampById(@Param("id") Long id);
+
+    @Query("select max(m.lastModifiedDate) as lastModifiedDate, count(m) as count," +
+            " (select max(t.lastModifiedDate) from Team t) as teamLastModifiedDate from Member m")
+    MemberPageStamp findPageStamp();
 
     List<Member> findListByUsername(String username);   //컬랙션
 
     Member findMemberByUsername(String username);       //단건
 
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
     Optional<Member> findOptionalByUsername(String username);  // 옵셔널   반환타입을 유연하게 쓸수 있다.
 
     Page<Member> findByAge(int age, Pageable pageable);
 
+    /* team.getMembers() 를 로딩하지 않고 쿼리로 바로 답한다. 회원 수는 Team.memberCount 를 써도 된다. */
+    long countByTeam(Team team);
+
+    boolean existsByIdAndTeam(Long id, Team team);
+
+    Slice<Member> findSliceByTeam(Team team, Pageable pageable);
+
+    /* 키셋(seek) 페이징 : offset 대신 마지막으로 본 (username, id) 다음부터 읽는다. count 쿼리도 없다.
+       정렬을 쿼리에 고정했기 때문에 Pageable 은 정렬 없이 PageRequest.ofSize(size) 로 넘겨야 한다.
+       findMemberDtoPage 처럼 팀 이름까지 DTO 로 바로 받는다. (팀 없는 회원도 나오게 left join) */
+    @Query("select new com.brunosong.data_jpa.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t" +
+            " order by m.username desc, m.id desc")
+    Slice<MemberDto> findMemberDtoKeysetFirst(Pageable pageable);
+
+    @Query("select new com.brunosong.data_jpa.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t" +
+            " where m.username < :username or (m.username = :username and m.id < :id)" +
+            " order by m.username desc, m.id desc")
+    Slice<MemberDto> findMemberDtoKeysetAfter(@Param("username") String username, @Param("id") Long id, Pageable pageable);
+
+    @Query("select m from Member m where m.age = :age order by m.username desc, m.id desc")
+    Slice<Member> findKeysetByAge(@Param("age") int age, Pageable pageable);
+
+    @Query("select m from Member m" +
+            " where m.age = :age and (m.username < :username or (m.username = :username and m.id < :id))" +
+            " order by m.username desc, m.id desc")
+    Slice<Member> findKeysetByAgeAfter(@Param("age") int age, @Param("username") String username,
+                                       @Param("id") Long id, Pageable pageable);
+
+    // JPQL 벌크 연산은 하이버네이트가 member 2차 캐시 리전과 관련 쿼리 캐시를 같이 비운다. (영속성 컨텍스트는 그대로라서 clear 는 따로 해야 한다)
+    // 리스너(@PreUpdate)를 거치지 않아서 lastModifiedDate / lastModifyBy 도 직접 바꿔야 ETag / Last-Modified, 감사 값이 맞는다.
+    // 보통은 bulkAgePlus(int) (프래그먼트) 로 부른다. 같은 쿼리에 시각과 수정자를 엔티티 수정과 같은 AuditContext 값으로 채운다.
     @Modifying //(clearAutomatically = true) 이게 있으면 자동으로 영속성컨텍스트를 클리어 한다. // @Modifying 이게 있어야 작동한다. 아니면 에러난다.
-    @Query("update Member m set m.age = m.age + 1 where m.age >= :age")
-    int bulkAgePlus(@Param("age") int age);
+    @Query(BULK_AGE_PLUS)
+    int bulkAgePlus(@Param("age") int age, @Param("now") LocalDateTime now, @Param("by") String by);
 
 
     @Query("select m from Member m left join fetch m.team")
@@ -70,8 +138,28 @@ public interface MemberRepository extends JpaRepository<Member,Long> , MemberRep
     Member findReadOnlyByUsername(String username);
 
     // select for update 비관적인락 ??? 내가 업데이트를 할때 다른 애들은 손대지마 뭐 그런 락이 있다고 한다. 그걸 jpa에서도 지원한다.
+    // 타임아웃이 없으면 락을 잡은 트랜잭션이 끝날때까지 무한정 기다린다. 3초 지나면 LockTimeoutException (DB 가 지원하는 경우)
     @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "3000"))
     List<Member> findLockByUsername(String name);
 
 
+    /* 비동기 조회. memberQueryExecutor 스레드에서 트랜잭션을 열고 실행해서 (AsyncConfig) 부른 스레드는 바로 돌아간다.
+       결과 엔티티는 트랜잭션이 끝난 뒤에 받기 때문에 준영속 상태다. 지연로딩이 필요하면 fetch join / DTO 로 조회해야 한다.
+       실행기가 꽉 차면 부르는 순간 TaskRejectedException 이 난다. */
+    @Async(AsyncConfig.MEMBER_QUERY_EXECUTOR)
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
+    CompletableFuture<List<Member>> findAsyncByUsername(String username);
+
+    @Async(AsyncConfig.MEMBER_QUERY_EXECUTOR)
+    CompletableFuture<Page<Member>> findAsyncByAge(int age, Pageable pageable);
+
+    @Async(AsyncConfig.MEMBER_QUERY_EXECUTOR)
+    @Query("select new com.brunosong.data_jpa.dto.MemberDto(m.id ,m.username, t.name) from Member m join m.team t")
+    CompletableFuture<List<MemberDto>> findAsyncMemberDto();
+
+    @Async(AsyncConfig.MEMBER_QUERY_EXECUTOR)
+    CompletableFuture<Member> findAsyncById(Long id);     // 없으면 null
+
+
 }
@@ -1,11 +1,50 @@
 package com.brunosong.data_jpa.repository;
 
+import com.brunosong.data_jpa.dto.ChangeWatermark;
+import com.brunosong.data_jpa.dto.MemberChangeBatch;
+import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.dto.MemberSearchCondition;
 import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.entity.MemberArchive;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface MemberRepositoryCustom {
 
+    String BULK_AGE_PLUS = "update Member m set m.age = m.age + 1, m.version = m.version + 1," +
+            " m.lastModifiedDate = :now, m.lastModifyBy = :by where m.age >= :age";
+
+    /* age 이상인 회원 나이를 벌크로 +1. 수정 시각 / 수정자는 DB 시계가 아니라 엔티티 수정과 같은 AuditContext 값이다.
+       (DB 와 애플리케이션 시계가 다를수 있고, 시각만 바꾸면 새 시각에 예전 수정자가 남는다) 트랜잭션 안에서 불러야 한다. */
+    int bulkAgePlus(int age);
+
+    /* 보관 테이블 (MemberArchive) 에서 id 로 찾는다. 읽기 전용이다. findById, existsById, findAll 등은 member 테이블만 본다. */
+    Optional<MemberArchive> findArchivedById(Long id);
+
     List<Member> findMemberCustom();
 
+    /* username in (...) 조회. 이름이 많으면 나눠서 조회하고 합친다. (MemberRepositoryImpl.IN_CLAUSE_CHUNK_SIZE) */
+    List<Member> findByNames(Collection<String> names);
+
+    /* 전체를 List 로 올리지 않고 커서로 fetchSize 만큼씩 가져온다. 트랜잭션 안에서 쓰고 반드시 close 해야 한다. */
+    Stream<MemberDto> streamMemberDto(int fetchSize);
+
+    /* 작업 큐처럼 쓰기 위한 선점 조회. age 가 ageBelow 보다 작은 회원 중 다른 트랜잭션이 잡고 있지 않은 것을 limit 개 까지 락을 걸고 가져온다.
+       lockTimeoutMillis : -2 (SKIP LOCKED, 기본), 0 (NOWAIT), 양수 (그 시간만큼 기다림) */
+    List<Member> claimMembers(int ageBelow, int limit, int lockTimeoutMillis);
+
+    /* 변경 피드. after 이후에 바뀌거나 (lastModifiedDate) 삭제된 (MemberTombstone) 회원을 (시각, id) 순서로 size 개 까지.
+       until 보다 늦은 변경은 아직 커밋 안 된 트랜잭션이 앞 시각으로 끼어들수 있어서 다음 조회로 미룬다. */
+    MemberChangeBatch findChangesAfter(ChangeWatermark after, LocalDateTime until, int size);
+
+    /* 동적 검색. 조건 (username 접두어, 나이 범위, 팀 이름) 마다 메소드를 따로 만들지 않고 값이 있는 조건만 where 에 넣는다.
+       결과는 DTO (팀 이름 포함) 로 바로 받는다. 정렬은 id, username, age 만 된다. */
+    Page<MemberDto> search(MemberSearchCondition condition, Pageable pageable);
+
 }
@@ -1,19 +1,252 @@
 package com.brunosong.data_jpa.repository;
 
+import com.brunosong.data_jpa.dto.ChangeWatermark;
+import com.brunosong.data_jpa.dto.MemberChangeBatch;
+import com.brunosong.data_jpa.dto.MemberChangeDto;
+import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.dto.MemberSearchCondition;
+import com.brunosong.data_jpa.entity.AuditContext;
 import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.entity.MemberArchive;
+import com.brunosong.data_jpa.entity.Team;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    // in 절 파라미터 개수 상한. 2의 제곱수로 둬야 in_clause_parameter_padding 으로 채웠을때 이 크기를 넘지 않는다.
+    static final int IN_CLAUSE_CHUNK_SIZE = 512;
+
+    // search 정렬 허용 컬럼. 아무 프로퍼티나 받으면 인덱스 없는 정렬이나 잘못된 경로로 에러가 난다.
+    private static final Set<String> SEARCH_SORT_PROPERTIES = Set.of("id", "username", "age");
+
     private final EntityManager em;
+    private final ObjectProvider<AuditorAware<String>> auditorAwareProvider;
+
+    @Override
+    public int bulkAgePlus(int age) {
+        AuditContext audit = AuditContext.current();
+        return em.createQuery(BULK_AGE_PLUS)
+                .setParameter("age", age)
+                .setParameter("now", audit.now())
+                .setParameter("by", audit.auditor(auditorAwareProvider.getIfAvailable(() -> Optional::empty)))
+                .executeUpdate();
+    }
+
+    @Override
+    public Optional<MemberArchive> findArchivedById(Long id) {
+        return Optional.ofNullable(em.find(MemberArchive.class, id));
+    }
 
     @Override
     public List<Member> findMemberCustom() {
         return em.createQuery("select m from Member m")
                 .getResultList();
     }
+
+    /* in :names 는 리스트 크기마다 SQL 이 달라져서 (?, ?) (?, ?, ?) ... 쿼리 계획 캐시와 DB 문장 캐시가 크기별로 쌓인다.
+       in_clause_parameter_padding (application.yml) 으로 2의 제곱수 개수로 맞추고, 512 개 넘으면 잘라서 여러번 조회한다.
+       그러면 SQL 모양은 1, 2, 4 ... 512 열 가지 밖에 안 나온다. 드라이버 파라미터 개수 제한에도 안 걸린다. */
+    @Override
+    public List<Member> findByNames(Collection<String> names) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(names));
+        List<Member> result = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = distinct.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, distinct.size()));
+            result.addAll(em.createQuery("select m from Member m where m.username in :names", Member.class)
+                    .setParameter("names", chunk)
+                    .getResultList());
+        }
+        return result;
+    }
+
+    // 엔티티가 아니라 DTO 로 바로 받기 때문에 영속성 컨텍스트에 쌓이는게 없다. (스냅샷, 프록시 X)
+    // 그래서 중간에 clear/detach 할 필요 없이 메모리가 일정하게 유지된다.
+    @Override
+    public Stream<MemberDto> streamMemberDto(int fetchSize) {
+        return em.createQuery(
+                        "select new com.brunosong.data_jpa.dto.MemberDto(m.id, m.username, t.name)" +
+                                " from Member m left join m.team t order by m.id", MemberDto.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream();
+    }
+
+    // 잡혀있는 행은 건너뛰기 때문에 워커끼리 같은 행을 두고 줄을 서지 않는다. (워커 수만큼 처리량이 늘어난다)
+    // SKIP LOCKED 를 지원하지 않는 DB (H2 등) 는 하이버네이트 방언이 그냥 for update 로 바꾼다.
+    @Override
+    public List<Member> claimMembers(int ageBelow, int limit, int lockTimeoutMillis) {
+        return em.createQuery("select m from Member m where m.age < :age order by m.id", Member.class)
+                .setParameter("age", ageBelow)
+                .setMaxResults(limit)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint(AvailableSettings.JPA_LOCK_TIMEOUT, lockTimeoutMillis)
+                .getResultList();
+    }
+
+    /* 회원과 툼스톤을 각각 (시각, id) 순서로 size + 1 개씩 읽어서 합친다. 둘 다 인덱스 범위 조회라 몇번째 묶음이든 비용이 같다.
+       "시각 > ? or (시각 = ? and id > ?)" 는 인덱스를 못 타는 DB 가 있어서 시각 >= ? 범위로 먼저 자른다. */
+    @Override
+    public MemberChangeBatch findChangesAfter(ChangeWatermark after, LocalDateTime until, int size) {
+        List<MemberChangeDto> changed = em.createQuery(
+                        "select new com.brunosong.data_jpa.dto.MemberChangeDto(m.id, m.username, m.age, t.name, m.lastModifiedDate)" +
+                                " from Member m left join m.team t" +
+                                " where m.lastModifiedDate >= :since and (m.lastModifiedDate > :since or m.id > :id)" +
+                                " and m.lastModifiedDate < :until" +
+                                " order by m.lastModifiedDate, m.id", MemberChangeDto.class)
+                .setParameter("since", after.getModifiedDate())
+                .setParameter("id", after.getId())
+                .setParameter("until", until)
+                .setMaxResults(size + 1)
+                .getResultList();
+
+        List<MemberChangeDto> deleted = em.createQuery(
+                        "select new com.brunosong.data_jpa.dto.MemberChangeDto(d.memberId, d.username, d.deletedDate)" +
+                                " from MemberTombstone d" +
+                                " where d.deletedDate >= :since and (d.deletedDate > :since or d.memberId > :id)" +
+                                " and d.deletedDate < :until" +
+                                " order by d.deletedDate, d.memberId", MemberChangeDto.class)
+                .setParameter("since", after.getModifiedDate())
+                .setParameter("id", after.getId())
+                .setParameter("until", until)
+                .setMaxResults(size + 1)
+                .getResultList();
+
+        List<MemberChangeDto> merged = new ArrayList<>(Math.min(size, changed.size() + deleted.size()));
+        int c = 0;
+        int d = 0;
+        while (merged.size() < size && (c < changed.size() || d < deleted.size())) {
+            if (d >= deleted.size() || (c < changed.size() && changed.get(c).watermark().isBefore(deleted.get(d).watermark()))) {
+                merged.add(changed.get(c++));
+            } else {
+                merged.add(deleted.get(d++));
+            }
+        }
+
+        boolean hasMore = c < changed.size() || d < deleted.size();
+        ChangeWatermark next = merged.isEmpty() ? after : merged.get(merged.size() - 1).watermark();
+        return new MemberChangeBatch(merged, next, hasMore);
+    }
+
+    /* Criteria 로 조건을 만든다. 값은 리터럴로 넣지 않고 전부 파라미터로 바인딩한다.
+       (리터럴이면 값마다 SQL 이 달라져서 쿼리 계획 캐시, DB 문장 캐시를 못 쓴다) 조건은 항상 같은 순서로 붙여서
+       값이 달라도 조건 모양이 같으면 같은 JPQL / SQL 이 된다. 모양은 최대 2^4 가지다. */
+    @Override
+    public Page<MemberDto> search(MemberSearchCondition condition, Pageable pageable) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+
+        CriteriaQuery<MemberDto> query = cb.createQuery(MemberDto.class);
+        Root<Member> m = query.from(Member.class);
+        Join<Member, Team> t = m.join("team", JoinType.LEFT);
+        Map<ParameterExpression<?>, Object> params = new LinkedHashMap<>();
+        query.select(cb.construct(MemberDto.class, m.get("id"), m.get("username"), t.get("name")))
+                .where(searchPredicates(cb, m, t, condition, params))
+                .orderBy(searchOrders(cb, m, pageable.getSort()));
+
+        TypedQuery<MemberDto> contentQuery = em.createQuery(query);
+        params.forEach((param, value) -> setParameter(contentQuery, param, value));
+        if (pageable.isPaged()) {
+            contentQuery.setFirstResult((int) pageable.getOffset());
+            contentQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<MemberDto> content = contentQuery.getResultList();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> searchCount(condition));
+    }
+
+    // 팀 이름 조건이 없으면 count 는 조인이 필요 없다.
+    private long searchCount(MemberSearchCondition condition) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Member> m = query.from(Member.class);
+        Join<Member, Team> t = condition.getTeamName() != null ? m.join("team") : null;
+        Map<ParameterExpression<?>, Object> params = new LinkedHashMap<>();
+        query.select(cb.count(m)).where(searchPredicates(cb, m, t, condition, params));
+
+        TypedQuery<Long> countQuery = em.createQuery(query);
+        params.forEach((param, value) -> setParameter(countQuery, param, value));
+        return countQuery.getSingleResult();
+    }
+
+    private static Predicate[] searchPredicates(CriteriaBuilder cb, Root<Member> m, Join<Member, Team> t,
+                                                MemberSearchCondition condition, Map<ParameterExpression<?>, Object> params) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (condition.getUsernamePrefix() != null) {
+            ParameterExpression<String> prefix = cb.parameter(String.class, "usernamePrefix");
+            params.put(prefix, escapeLike(condition.getUsernamePrefix()) + "%");
+            predicates.add(cb.like(m.get("username"), prefix, '\\'));
+        }
+        if (condition.getAgeGoe() != null) {
+            ParameterExpression<Integer> ageGoe = cb.parameter(Integer.class, "ageGoe");
+            params.put(ageGoe, condition.getAgeGoe());
+            predicates.add(cb.greaterThanOrEqualTo(m.get("age"), ageGoe));
+        }
+        if (condition.getAgeLoe() != null) {
+            ParameterExpression<Integer> ageLoe = cb.parameter(Integer.class, "ageLoe");
+            params.put(ageLoe, condition.getAgeLoe());
+            predicates.add(cb.lessThanOrEqualTo(m.get("age"), ageLoe));
+        }
+        if (condition.getTeamName() != null) {
+            ParameterExpression<String> teamName = cb.parameter(String.class, "teamName");
+            params.put(teamName, condition.getTeamName());
+            predicates.add(cb.equal(t.get("name"), teamName));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    // 정렬 뒤에 id 를 붙여서 같은 값이 많아도 페이지 사이에 순서가 흔들리지 않게 한다.
+    private static List<Order> searchOrders(CriteriaBuilder cb, Root<Member> m, Sort sort) {
+        List<Order> orders = new ArrayList<>();
+        boolean hasId = false;
+        for (Sort.Order order : sort) {
+            if (!SEARCH_SORT_PROPERTIES.contains(order.getProperty())) {
+                throw new IllegalArgumentException("정렬할수 없는 프로퍼티 입니다. : " + order.getProperty());
+            }
+            orders.add(order.isAscending() ? cb.asc(m.get(order.getProperty())) : cb.desc(m.get(order.getProperty())));
+            hasId |= "id".equals(order.getProperty());
+        }
+        if (!hasId) {
+            orders.add(cb.asc(m.get("id")));
+        }
+        return orders;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setParameter(TypedQuery<?> query, ParameterExpression<?> param, Object value) {
+        query.setParameter((ParameterExpression<Object>) param, value);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 }
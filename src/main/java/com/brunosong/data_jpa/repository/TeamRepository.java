@@ -2,7 +2,14 @@ package com.brunosong.data_jpa.repository;
 
 import com.brunosong.data_jpa.entity.Team;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.Optional;
 
 public interface TeamRepository extends JpaRepository<Team,Long> {
 
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
+    Optional<Team> findFirstByName(String name);
+
 }
@@ -0,0 +1,43 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.monitor.LockWaitMetrics;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/* 같은 회원을 여러 요청이 동시에 고치는 경우 두가지 방법.
+ *   increaseAge         : 낙관적 락 (@Version) + 충돌나면 재시도. 충돌이 드물면 락을 안 잡아서 빠르다.
+ *   increaseAgeWithLock : 비관적 락 (select for update). 충돌이 잦으면 재시도 낭비가 없다.
+ * 어느쪽이 나은지는 LockContentionBenchmark 로 확인한다.
+ * */
+@Service
+@RequiredArgsConstructor
+public class MemberAgeService {
+
+    private final MemberRepository memberRepository;
+    private final OptimisticRetryTemplate optimisticRetryTemplate;
+    private final LockWaitMetrics lockWaitMetrics;
+
+    public int increaseAge(String username) {
+        return optimisticRetryTemplate.execute(() -> increase(memberRepository.findListByUsername(username)));
+    }
+
+    @Transactional
+    public int increaseAgeWithLock(String username) {
+        long start = System.nanoTime();
+        List<Member> locked = memberRepository.findLockByUsername(username);
+        lockWaitMetrics.record(System.nanoTime() - start, locked.size());   // 다른 트랜잭션이 잡고 있으면 여기서 기다린다.
+        return increase(locked);
+    }
+
+    private static int increase(List<Member> members) {
+        for (Member member : members) {
+            member.setAge(member.getAge() + 1);
+        }
+        return members.size();
+    }
+}
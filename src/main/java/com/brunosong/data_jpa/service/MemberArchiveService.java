@@ -0,0 +1,110 @@
+package com.brunosong.data_jpa.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/* 오래 수정되지 않은 회원 (lastModifiedDate 가 inactive-after 보다 오래된) 을 member_archive 로 옮긴다.
+ * member 테이블과 인덱스에는 자주 쓰는 회원만 남아서 findByAge, 목록, bulkAgePlus 가 전체 이력이 늘어나도 느려지지 않는다.
+ *
+ * batch-size 건씩 트랜잭션을 나눠서 insert ... select 후 delete 한다. 대상은 for update (SKIP LOCKED) 로 잡아서
+ * 그 사이 다른 트랜잭션이 고치고 있는 회원은 건너뛴다. 옮겨진 회원은 findArchivedById 로 (읽기 전용) 찾는다.
+ * 옮긴 회원은 팀 인원수 (team.member_count) 에서 같은 배치 안에서 뺀다. 그래서 memberCount 는 members.size(), countByTeam 과 같다.
+ * JPQL delete 라서 툼스톤 (변경 피드 삭제) 은 남기지 않는다. 지워진게 아니라 옮겨진 것이다.
+ * */
+@Slf4j
+@Service
+public class MemberArchiveService {
+
+    private final EntityManager em;
+    private final TransactionTemplate batchTx;
+    private final boolean enabled;
+    private final Duration inactiveAfter;
+    private final int batchSize;
+
+    public MemberArchiveService(EntityManager em,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${member.archive.enabled:false}") boolean enabled,
+                                @Value("${member.archive.inactive-after:365d}") Duration inactiveAfter,
+                                @Value("${member.archive.batch-size:500}") int batchSize) {
+        this.em = em;
+        this.batchTx = new TransactionTemplate(transactionManager);
+        this.batchTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.inactiveAfter = inactiveAfter;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${member.archive.interval:PT1H}", fixedDelayString = "${member.archive.interval:PT1H}")
+    public void archiveInactive() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long archived = archiveModifiedBefore(LocalDateTime.now().minus(inactiveAfter));
+        if (archived > 0) {
+            log.info("회원 보관 : {} 건, {} ms", archived, System.currentTimeMillis() - start);
+        }
+    }
+
+    /* cutoff 전에 마지막으로 수정된 회원을 전부 옮기고 옮긴 건수를 돌려준다. 중간에 인터럽트 되면 거기까지만 한다. */
+    public long archiveModifiedBefore(LocalDateTime cutoff) {
+        long total = 0;
+        int moved;
+        do {
+            moved = batchTx.execute(status -> archiveBatch(cutoff));
+            total += moved;
+        } while (moved == batchSize && !Thread.currentThread().isInterrupted());
+        return total;
+    }
+
+    // (lastModifiedDate, id) 인덱스 순서로 batchSize 건만 잡는다.
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Long> ids = em.createQuery(
+                        "select m.id from Member m where m.lastModifiedDate < :cutoff order by m.lastModifiedDate, m.id", Long.class)
+                .setParameter("cutoff", cutoff)
+                .setMaxResults(batchSize)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint(AvailableSettings.JPA_LOCK_TIMEOUT, -2)
+                .getResultList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // insert ... select 는 select 쪽 타입이 같아야 해서 (current_timestamp 는 Timestamp) 보관 시각은 따로 update 한다.
+        em.createQuery("insert into MemberArchive (id, username, age, teamId, version, createDate, lastModifiedDate, createdBy, lastModifyBy)" +
+                        " select m.id, m.username, m.age, m.team.id, m.version, m.createDate, m.lastModifiedDate, m.createdBy, m.lastModifyBy" +
+                        " from Member m where m.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        em.createQuery("update MemberArchive a set a.archivedDate = :now where a.id in :ids")
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("ids", ids)
+                .executeUpdate();
+
+        // 벌크 delete 는 TeamMemberCountListener 를 안 타서 팀 인원수는 여기서 뺀다. (팀마다 한번, member_count = member_count - 옮긴 수)
+        // 지우기 전에 해야 서브쿼리로 옮긴 회원을 셀수 있다. 팀 update 라서 team 2차 캐시도 비워진다.
+        em.createQuery("update Team t set t.memberCount = t.memberCount" +
+                        " - (select count(m) from Member m where m.team = t and m.id in :ids)" +
+                        " where t.id in (select m.team.id from Member m where m.id in :ids)")
+                .setParameter("ids", ids)
+                .executeUpdate();
+
+        // JPQL 벌크 delete 라서 member 2차 캐시 / team.members 컬렉션 캐시도 하이버네이트가 비운다.
+        em.createQuery("delete from Member m where m.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        return ids.size();
+    }
+}
@@ -0,0 +1,104 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.dto.BulkImportResult;
+import com.brunosong.data_jpa.dto.MemberImportDto;
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.entity.Team;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.repository.TeamRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/* 대량 등록. save 를 한건씩 바로 날리는게 아니라
+ *   1. 시퀀스는 allocation size 만큼 한번에 받아오고 (ConfigurableSequenceGenerator)
+ *   2. insert 는 hibernate.jdbc.batch_size 만큼 묶어서 보내고 (order_inserts 로 team / member 끼리 정렬)
+ *   3. batchSize 마다 커밋 (flush + clear) 해서 영속성 컨텍스트가 계속 커지지 않게 한다.
+ * batchSize 는 hibernate.jdbc.batch_size 와 같게 맞추는게 좋다.
+ *
+ * 배치마다 트랜잭션이 따로라서 수정 시각 (AuditContext) 도 배치마다 새로 정해진다. 10만건을 한 트랜잭션으로 넣으면
+ * 전부 시작 시각으로 찍힌채 한참 뒤에 커밋되서 변경 피드 (MemberChangeFeedService) 가 이미 지나간 시각의 행을 놓친다.
+ * 중간에 실패하면 그 배치만 롤백되고 앞에서 커밋된 배치는 남는다. 호출한 쪽에 트랜잭션이 있으면 그 안에서 한번에 들어간다.
+ * */
+@Service
+public class MemberBulkImportService {
+
+    private final MemberRepository memberRepository;
+    private final TeamRepository teamRepository;
+    private final EntityManager em;
+    private final TransactionTemplate batchTx;
+    private final int batchSize;
+
+    public MemberBulkImportService(MemberRepository memberRepository,
+                                   TeamRepository teamRepository,
+                                   EntityManager em,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${member.bulk-import.batch-size:100}") int batchSize) {
+        this.memberRepository = memberRepository;
+        this.teamRepository = teamRepository;
+        this.em = em;
+        this.batchTx = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    public BulkImportResult importMembers(Iterable<MemberImportDto> rows) {
+
+        long start = System.currentTimeMillis();
+        Iterator<MemberImportDto> iterator = rows.iterator();
+        Map<String, Long> teamIds = new HashMap<>();   // 앞 배치에서 커밋된 팀. 다음 배치는 이름으로 다시 찾지 않는다.
+        Progress progress = new Progress();
+
+        while (iterator.hasNext()) {
+            batchTx.executeWithoutResult(status -> importBatch(iterator, teamIds, progress));
+        }
+        return new BulkImportResult(progress.members, progress.createdTeams, System.currentTimeMillis() - start);
+    }
+
+    // rows 를 batchSize 만큼 (새로 만든 팀 포함) 넣는다.
+    private void importBatch(Iterator<MemberImportDto> rows, Map<String, Long> teamIds, Progress progress) {
+        Map<String, Team> teams = new HashMap<>();   // 이번 배치에서 영속 상태인 팀 (memberCount 를 올려야 해서)
+        int pending = 0;
+
+        while (pending < batchSize && rows.hasNext()) {
+            MemberImportDto row = rows.next();
+            Team team = null;
+            if (row.getTeamName() != null) {
+                team = teams.get(row.getTeamName());
+                if (team == null) {
+                    Long teamId = teamIds.get(row.getTeamName());
+                    if (teamId != null) {
+                        team = em.find(Team.class, teamId);   // 2차 캐시에 있으면 쿼리 X
+                    } else {
+                        team = teamRepository.findFirstByName(row.getTeamName()).orElse(null);
+                        if (team == null) {
+                            team = teamRepository.save(new Team(row.getTeamName()));
+                            progress.createdTeams++;
+                            pending++;
+                        }
+                        teamIds.put(row.getTeamName(), team.getId());
+                    }
+                    teams.put(row.getTeamName(), team);
+                }
+            }
+
+            // 생성자가 changeTeam 을 불러서 memberCount 만 올린다. members 컬렉션은 로딩하지 않는다.
+            memberRepository.save(new Member(row.getUsername(), row.getAge(), team));
+            progress.members++;
+            pending++;
+        }
+
+        em.flush();
+        em.clear();
+    }
+
+    private static final class Progress {
+        long members;
+        long createdTeams;
+    }
+}
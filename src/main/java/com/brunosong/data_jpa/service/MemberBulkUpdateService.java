@@ -0,0 +1,204 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.dto.BulkUpdateResult;
+import com.brunosong.data_jpa.entity.AuditContext;
+import com.brunosong.data_jpa.entity.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/* bulkAgePlus 를 id 구간(chunkSize) 으로 나눠서 구간마다 짧은 트랜잭션으로 실행한다.
+ * 한 문장으로 전체를 update 하면 끝날때까지 행 락을 다 잡고 있어서 다른 쓰기가 멈춘다.
+ *
+ * JPQL 벌크 update 는 하이버네이트가 member 2차 캐시 리전을 통째로 비운다. 여기서는 JDBC 로 직접 update 하고
+ * 실제로 바뀐 회원만 2차 캐시와 (호출한 쪽의) 영속성 컨텍스트에서 빼낸다. member 쿼리 캐시는 무효화 한다.
+ * 캐시 정리는 하이버네이트 벌크 연산과 같은 순서로 한다. update 전에 미리 무효화 (pre-invalidate + evict) 해서
+ * 청크 트랜잭션 도중에 다른 트랜잭션이 예전 값을 캐시에 넣지 못하게 하고, 커밋(롤백) 뒤에 한번 더 무효화 + evict 한다.
+ *
+ * 구간마다 REQUIRES_NEW 라서 호출한 트랜잭션에서 같은 회원을 수정하고 있으면 락을 기다리게 된다. 트랜잭션 밖에서 부르는게 좋다.
+ * */
+@Slf4j
+@Service
+public class MemberBulkUpdateService {
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final AuditorAware<String> auditorAware;
+    private final TransactionTemplate chunkTx;
+    private final int chunkSize;
+    private final Duration throttle;
+
+    public MemberBulkUpdateService(EntityManager em,
+                                   EntityManagerFactory emf,
+                                   PlatformTransactionManager transactionManager,
+                                   AuditorAware<String> auditorAware,
+                                   @Value("${member.bulk-update.chunk-size:1000}") int chunkSize,
+                                   @Value("${member.bulk-update.throttle:0ms}") Duration throttle) {
+        this.em = em;
+        this.emf = emf;
+        this.auditorAware = auditorAware;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = chunkSize;
+        this.throttle = throttle;
+    }
+
+    public BulkUpdateResult bulkAgePlus(int age) {
+        return bulkAgePlus(age, progress -> { });
+    }
+
+    /* 청크가 끝날때마다 listener 로 지금까지 결과를 넘겨준다. 중간에 인터럽트 되면 거기까지만 하고 completed = false */
+    public BulkUpdateResult bulkAgePlus(int age, BulkUpdateListener listener) {
+
+        long start = System.currentTimeMillis();
+        Object[] range = chunkTx.execute(status -> (Object[]) em.createQuery(
+                        "select min(m.id), max(m.id) from Member m where m.age >= :age")
+                .setParameter("age", age)
+                .getSingleResult());
+
+        if (range == null || range[0] == null) {
+            return new BulkUpdateResult(0, 0, null, System.currentTimeMillis() - start, true);
+        }
+
+        long minId = (Long) range[0];
+        long maxId = (Long) range[1];
+        int chunks = 0;
+        long affected = 0;
+        Long lastId = null;
+
+        for (long from = minId; from <= maxId; from += chunkSize) {
+            long chunkFrom = from;
+            long to = Math.min(from + chunkSize - 1, maxId);
+
+            // 청크가 커밋되면 그 청크 id 만 detach 하고 버린다. (전체 id 를 모아두지 않아서 메모리가 테이블 크기와 상관없다)
+            List<Long> ids = chunkTx.execute(status -> ageplusChunk(age, chunkFrom, to));
+            detachFromCurrentPersistenceContext(ids);
+
+            chunks++;
+            affected += ids.size();
+            lastId = to;
+
+            BulkUpdateResult progress = new BulkUpdateResult(chunks, affected, lastId, System.currentTimeMillis() - start, to >= maxId);
+            log.info("bulkAgePlus 진행 : {}", progress);
+            listener.onChunk(progress);
+
+            if (to < maxId && !pause()) {
+                return new BulkUpdateResult(chunks, affected, lastId, System.currentTimeMillis() - start, false);
+            }
+        }
+
+        return new BulkUpdateResult(chunks, affected, lastId, System.currentTimeMillis() - start, true);
+    }
+
+    // 구간의 대상 행을 for update 로 잡고 같은 조건으로 update 한다. 바뀐 id 목록을 돌려준다.
+    // 수정 시각 / 수정자는 엔티티 수정과 같이 AuditContext 에서 가져온다. (청크 트랜잭션마다 한번)
+    private List<Long> ageplusChunk(int age, long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        AuditContext audit = AuditContext.current();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement select = connection.prepareStatement(
+                    "select member_id from member where member_id between ? and ? and age >= ? for update")) {
+                select.setLong(1, from);
+                select.setLong(2, to);
+                select.setInt(3, age);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong(1));
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+            invalidateCaches(ids);
+            try (PreparedStatement update = connection.prepareStatement(
+                    "update member set age = age + 1, version = version + 1, last_modified_date = ?, last_modify_by = ?"
+                            + " where member_id between ? and ? and age >= ?")) {
+                update.setTimestamp(1, Timestamp.valueOf(audit.now()));
+                update.setString(2, audit.auditor(auditorAware));
+                update.setLong(3, from);
+                update.setLong(4, to);
+                update.setInt(5, age);
+                update.executeUpdate();
+            }
+        });
+        return ids;
+    }
+
+    // JDBC 로 바꿔서 하이버네이트가 모르니 member 쿼리 캐시와 바뀐 회원의 2차 캐시는 직접 정리한다.
+    // 지금 한번 (pre-invalidate 는 커밋 전까지 member 쿼리 캐시를 안 쓰게 막는다), 트랜잭션이 끝나고 한번 더.
+    private void invalidateCaches(List<Long> ids) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        TimestampsCache timestamps = session.getFactory().getCache().getTimestampsCache();
+        String[] spaces = {"member"};
+
+        timestamps.preInvalidate(spaces, session);
+        evictFromSecondLevelCache(ids);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                timestamps.invalidate(spaces, session);
+                evictFromSecondLevelCache(ids);
+            }
+        });
+    }
+
+    private void evictFromSecondLevelCache(List<Long> ids) {
+        for (Long id : ids) {
+            emf.getCache().evict(Member.class, id);
+        }
+    }
+
+    // 호출한 쪽 트랜잭션의 영속성 컨텍스트에 바뀐 회원이 있으면 그것만 detach 한다. (clear 처럼 전부 날리지 않는다)
+    private void detachFromCurrentPersistenceContext(List<Long> ids) {
+        if (ids.isEmpty() || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        for (Long id : ids) {
+            Object managed = session.getPersistenceContextInternal().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                em.detach(managed);
+            }
+        }
+    }
+
+    private boolean pause() {
+        if (throttle.isZero() || throttle.isNegative()) {
+            return !Thread.currentThread().isInterrupted();
+        }
+        try {
+            Thread.sleep(throttle.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    public interface BulkUpdateListener {
+        void onChunk(BulkUpdateResult progress);
+    }
+}
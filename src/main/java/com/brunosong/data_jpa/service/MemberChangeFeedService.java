@@ -0,0 +1,67 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.dto.ChangeWatermark;
+import com.brunosong.data_jpa.dto.MemberChangeBatch;
+import com.brunosong.data_jpa.dto.MemberChangeDto;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/* 회원 변경 피드. findAll 로 전부 다시 받지 않고 워터마크 이후 바뀐 것 (삭제 포함) 만 묶음 단위로 내려준다.
+ *
+ * lastModifiedDate 는 트랜잭션 시작 시각이라 (AuditContext) 오래 걸린 트랜잭션이 커밋되면 이미 지나간 시각으로 행이 생긴다.
+ * 그래서 지금 - lag 보다 이전 변경까지만 내보낸다. lag 는 가장 긴 쓰기 트랜잭션보다 길어야 빠지는게 없다.
+ * 대량 작업은 그래서 짧은 트랜잭션으로 나눠서 커밋한다. (MemberBulkImportService, MemberBulkUpdateService 는 배치 / 청크마다 커밋)
+ * 한 트랜잭션에서 lag 보다 오래 회원을 쓰는 작업을 새로 만들면 그 변경은 피드에서 빠질수 있다.
+ * */
+@Service
+public class MemberChangeFeedService {
+
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate batchTx;
+    private final Duration lag;
+
+    public MemberChangeFeedService(MemberRepository memberRepository,
+                                   ObjectMapper objectMapper,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${member.change-feed.lag:5s}") Duration lag) {
+        this.memberRepository = memberRepository;
+        this.objectMapper = objectMapper;
+        this.batchTx = new TransactionTemplate(transactionManager);
+        this.batchTx.setReadOnly(true);
+        this.lag = lag;
+    }
+
+    public MemberChangeBatch changesAfter(ChangeWatermark after, int size) {
+        LocalDateTime until = LocalDateTime.now().minus(lag);
+        return batchTx.execute(status -> memberRepository.findChangesAfter(after, until, size));
+    }
+
+    /* 따라잡을 때까지 batchSize 씩 읽어서 한줄씩 (NDJSON) 쓴다. 묶음마다 트랜잭션을 따로 열고 flush 해서 메모리와 락이 묶음 크기만큼만 든다.
+       until 을 처음에 한번 정해서 그 뒤로 계속 들어오는 변경 때문에 응답이 끝나지 않는 일은 없다. 마지막 워터마크를 돌려준다. */
+    public ChangeWatermark writeNdjson(ChangeWatermark after, int batchSize, Writer writer) throws IOException {
+        LocalDateTime until = LocalDateTime.now().minus(lag);
+        ChangeWatermark watermark = after;
+        MemberChangeBatch batch;
+        do {
+            ChangeWatermark from = watermark;
+            batch = batchTx.execute(status -> memberRepository.findChangesAfter(from, until, batchSize));
+            for (MemberChangeDto change : batch.getChanges()) {
+                writer.write(objectMapper.writeValueAsString(change));
+                writer.write('\n');
+            }
+            writer.flush();
+            watermark = batch.getNext();
+        } while (batch.isHasMore());
+        return watermark;
+    }
+}
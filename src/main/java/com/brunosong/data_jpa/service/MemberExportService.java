@@ -0,0 +1,67 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/* 회원 전체 내보내기. 한줄씩 읽으면서 바로 써서 테이블 크기와 상관없이 메모리가 일정하다.
+   fetchSize 건마다 flush 해서 쿼리가 다 끝나기 전에 클라이언트가 먼저 받기 시작한다. */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class MemberExportService {
+
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${member.export.fetch-size:500}")
+    private int fetchSize;
+
+    public long writeNdjson(Writer writer) throws IOException {
+        return export(writer, dto -> objectMapper.writeValueAsString(dto) + "\n");
+    }
+
+    public long writeCsv(Writer writer) throws IOException {
+        writer.write("id,username,teamName\n");
+        return export(writer, dto -> dto.getId() + "," + csv(dto.getUsername()) + "," + csv(dto.getTeamName()) + "\n");
+    }
+
+    private long export(Writer writer, RowFormatter formatter) throws IOException {
+        long count = 0;
+        try (Stream<MemberDto> stream = memberRepository.streamMemberDto(fetchSize)) {
+            Iterator<MemberDto> it = stream.iterator();
+            while (it.hasNext()) {
+                writer.write(formatter.format(it.next()));
+                if (++count % fetchSize == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    @FunctionalInterface
+    private interface RowFormatter {
+        String format(MemberDto dto) throws IOException;
+    }
+}
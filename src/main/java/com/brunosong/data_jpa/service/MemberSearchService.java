@@ -0,0 +1,27 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.config.CacheConfig;
+import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.dto.MemberSearchCondition;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/* 회원 검색. 같은 검색이 짧은 시간에 몰리면 (자동완성, 새로고침) 결과를 memberSearch 캐시 (ehcache.xml, TTL 10초) 에서 준다.
+   키는 정규화한 조건 + 페이지라서 " user" 와 "user" 처럼 뜻이 같은 검색은 같은 캐시를 쓴다. 수정해도 캐시를 지우지 않는다. */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class MemberSearchService {
+
+    private final MemberRepository memberRepository;
+
+    @Cacheable(cacheNames = CacheConfig.MEMBER_SEARCH, key = "{#condition.normalize(), #pageable}")
+    public Page<MemberDto> search(MemberSearchCondition condition, Pageable pageable) {
+        return memberRepository.search(condition.normalize(), pageable);
+    }
+}
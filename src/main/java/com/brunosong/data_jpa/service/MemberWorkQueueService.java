@@ -0,0 +1,41 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.monitor.LockWaitMetrics;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/* 회원 행을 작업 단위로 쓰는 큐. 워커 여러개가 동시에 process 를 불러도 서로 다른 행을 가져간다. (SKIP LOCKED)
+ * 가져온 행은 트랜잭션이 끝날때까지 락이 잡혀 있고, 워커가 처리하면서 age 를 ageBelow 이상으로 올리면 큐에서 빠진다.
+ * */
+@Service
+public class MemberWorkQueueService {
+
+    private final MemberRepository memberRepository;
+    private final LockWaitMetrics lockWaitMetrics;
+    private final int lockTimeoutMillis;
+
+    public MemberWorkQueueService(MemberRepository memberRepository,
+                                  LockWaitMetrics lockWaitMetrics,
+                                  @Value("${member.work-queue.lock-timeout:-2}") int lockTimeoutMillis) {
+        this.memberRepository = memberRepository;
+        this.lockWaitMetrics = lockWaitMetrics;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    /* 최대 limit 개를 선점해서 worker 로 처리하고 처리한 개수를 돌려준다. 0 이면 지금 가져갈 수 있는게 없다는 뜻 */
+    @Transactional
+    public int process(int ageBelow, int limit, Consumer<Member> worker) {
+        long start = System.nanoTime();
+        List<Member> claimed = memberRepository.claimMembers(ageBelow, limit, lockTimeoutMillis);
+        lockWaitMetrics.record(System.nanoTime() - start, claimed.size());
+
+        claimed.forEach(worker);
+        return claimed.size();
+    }
+}
@@ -0,0 +1,96 @@
+package com.brunosong.data_jpa.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.OptimisticLockException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/* 낙관적 락 충돌이 나면 트랜잭션을 새로 시작해서 다시 실행한다.
+ *
+ * 시도마다 REQUIRES_NEW 트랜잭션이라서 action 안에서 엔티티를 다시 조회해야 최신 version 을 읽는다.
+ * (바깥 트랜잭션에서 읽어둔 엔티티를 고치면 몇번을 다시 해도 계속 충돌난다)
+ * 재시도 사이에는 backoff * 2^(시도-1) 을 넘지 않는 범위에서 랜덤하게 쉰다. 동시에 실패한 애들이 또 동시에 부딪히지 않게.
+ * */
+@Slf4j
+@Component
+public class OptimisticRetryTemplate {
+
+    private final TransactionTemplate tx;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public OptimisticRetryTemplate(PlatformTransactionManager transactionManager,
+                                   @Value("${member.optimistic-retry.max-attempts:5}") int maxAttempts,
+                                   @Value("${member.optimistic-retry.backoff:10ms}") Duration backoff,
+                                   @Value("${member.optimistic-retry.max-backoff:200ms}") Duration maxBackoff) {
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tx.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("낙관적 락 재시도 {}번 모두 실패", attempt);
+                    throw e;
+                }
+                retries.increment();
+                if (!backoff(attempt)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public void run(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    private boolean backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
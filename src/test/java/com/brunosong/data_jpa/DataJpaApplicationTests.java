@@ -1,11 +1,20 @@
 package com.brunosong.data_jpa;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.AuditorAware;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 class DataJpaApplicationTests {
 
+    @Autowired
+    AuditorAware<String> auditorProvider;
+
     @Test
     void contextLoads() {
 
@@ -14,4 +23,13 @@ class DataJpaApplicationTests {
 
     }
 
+    @Test
+    void auditorProvider_는_버전4_UUID() {
+        for (int i = 0; i < 100; i++) {
+            UUID uuid = UUID.fromString(auditorProvider.getCurrentAuditor().orElseThrow());
+            assertThat(uuid.version()).isEqualTo(4);
+            assertThat(uuid.variant()).isEqualTo(2);
+        }
+    }
+
 }
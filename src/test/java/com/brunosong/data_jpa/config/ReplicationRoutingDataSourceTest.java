@@ -0,0 +1,66 @@
+package com.brunosong.data_jpa.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* H2 메모리 DB 두개를 primary / replica 로 띄워서 어디로 가는지 DATABASE() 이름으로 확인한다. */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.hikari.jdbc-url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.hikari.username=sa",
+        "app.datasource.replica.hikari.maximum-pool-size=1",
+        "app.datasource.replica.hikari.connection-timeout=250",
+        "decorator.datasource.exclude-beans=dataSource,routingDataSource"
+})
+class ReplicationRoutingDataSourceTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replicaDataSource;
+
+    @Autowired
+    ReplicationRoutingDataSource routingDataSource;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void readOnly_트랜잭션은_replica() {
+        assertThat(currentDatabase(true)).isEqualToIgnoringCase("replica");
+        assertThat(currentDatabase(false)).isEqualToIgnoringCase("primary");
+    }
+
+    @Test
+    void replica_풀이_꽉차면_primary() throws Exception {
+
+        long before = routingDataSource.getReplicaFallbacks();
+
+        //replica 풀(1개)을 먼저 잡아둔다.
+        try (Connection ignored = replicaDataSource.getConnection()) {
+            assertThat(currentDatabase(true)).isEqualToIgnoringCase("primary");
+        }
+
+        assertThat(routingDataSource.getReplicaFallbacks()).isEqualTo(before + 1);
+        assertThat(currentDatabase(true)).isEqualToIgnoringCase("replica");
+    }
+
+    private String currentDatabase(boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx.execute(status -> new JdbcTemplate(dataSource).queryForObject("call database()", String.class));
+    }
+}
@@ -0,0 +1,189 @@
+package com.brunosong.data_jpa.controller;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.entity.Team;
+import com.brunosong.data_jpa.monitor.QueryCounter;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.repository.TeamRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/* 조건부 GET. 수정이 커밋되야 시각/버전이 바뀌어서 테스트 트랜잭션을 쓰지 않는다.
+   @AutoConfigureMockMvc 를 붙이면 컨텍스트를 새로 만들어서 (ddl create) 직접 MockMvc 를 만든다. */
+@SpringBootTest
+class MemberControllerTest {
+
+    @Autowired
+    WebApplicationContext context;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @Test
+    void 회원_조건부_GET() throws Exception {
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long id = tx.execute(status -> memberRepository.save(new Member("etagMember", 10)).getId());
+
+        try {
+            String etag = mockMvc.perform(get("/members/{id}", id))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("etagMember"))
+                    .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertThat(etag).isNotNull();
+
+            //안 바뀌었으면 메타데이터 쿼리 한번만 하고 304
+            try (QueryCounter.Scope scope = QueryCounter.open("notModified")) {
+                mockMvc.perform(get("/members/{id}", id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                        .andExpect(status().isNotModified())
+                        .andExpect(content().string(""));
+                assertThat(scope.count()).isEqualTo(1);
+            }
+
+            //바뀌면 다시 200 + 새 ETag
+            tx.executeWithoutResult(status -> memberRepository.findById(id).get().setUsername("etagMember2"));
+
+            String changed = mockMvc.perform(get("/members/{id}", id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("etagMember2"))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertThat(changed).isNotEqualTo(etag);
+
+            mockMvc.perform(get("/members/{id}", Long.MAX_VALUE)).andExpect(status().isNotFound());
+        } finally {
+            memberRepository.deleteAllByIdInBatch(List.of(id));
+        }
+    }
+
+    @Test
+    void 목록_조건부_GET() throws Exception {
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        String etag = mockMvc.perform(get("/members").param("page", "0").param("size", "3"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+
+        try (QueryCounter.Scope scope = QueryCounter.open("notModified")) {
+            mockMvc.perform(get("/members").param("page", "0").param("size", "3").header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified());
+            assertThat(scope.count()).isEqualTo(1);
+        }
+
+        //삭제는 최근 수정 시각이 그대로라도 건수로 잡힌다
+        Long id = tx.execute(status -> memberRepository.save(new Member("etagPageMember", 10)).getId());
+        String added = mockMvc.perform(get("/members").param("page", "0").param("size", "3").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        tx.executeWithoutResult(status -> memberRepository.deleteAllByIdInBatch(List.of(id)));   // 툼스톤을 남기지 않는다.
+        mockMvc.perform(get("/members").param("page", "0").param("size", "3").header(HttpHeaders.IF_NONE_MATCH, added))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void 키셋_목록_팀이름() throws Exception {
+
+        //given  username desc 정렬에서 맨 앞에 오도록
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Team team = tx.execute(status -> teamRepository.save(new Team("keysetTeam")));
+        List<Long> ids = tx.execute(status -> List.of(
+                memberRepository.save(new Member("zzzzzzKeyset2", 10, team)).getId(),
+                memberRepository.save(new Member("zzzzzzKeyset1", 10)).getId()));
+
+        try {
+            //when  첫 페이지는 팀 이름까지 나온다.
+            String next = JsonPath.read(mockMvc.perform(get("/members").param("after", "").param("size", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].username").value("zzzzzzKeyset2"))
+                    .andExpect(jsonPath("$.content[0].teamName").value("keysetTeam"))
+                    .andReturn().getResponse().getContentAsString(), "$.next");
+
+            //then  다음 페이지는 팀 없는 회원 (left join)
+            mockMvc.perform(get("/members").param("after", next).param("size", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].username").value("zzzzzzKeyset1"))
+                    .andExpect(jsonPath("$.content[0].teamName").doesNotExist());
+        } finally {
+            memberRepository.deleteAllByIdInBatch(ids);
+            teamRepository.deleteAllByIdInBatch(List.of(team.getId()));
+        }
+    }
+
+    @Test
+    void 변경피드_NDJSON() throws Exception {
+
+        mockMvc.perform(get("/members/changes").param("size", "50"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"));
+
+        mockMvc.perform(get("/members/changes").param("after", "잘못된커서"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void 대량등록_건수_제한() throws Exception {
+
+        String body = "[{\"username\":\"httpBulk1\",\"age\":1},{\"username\":\"httpBulk2\",\"age\":2},{\"username\":\"httpBulk3\",\"age\":3}]";
+        MemberController controller = context.getBean(MemberController.class);
+        Object maxRows = ReflectionTestUtils.getField(controller, "bulkImportMaxRows");
+
+        try {
+            //제한을 넘으면 413 이고 같은 배치에서 넣던것은 롤백 (batch-size 100 안이라 전부)
+            ReflectionTestUtils.setField(controller, "bulkImportMaxRows", 2);
+            mockMvc.perform(post("/members/bulk").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isPayloadTooLarge());
+            assertThat(memberRepository.findByUsername("httpBulk1")).isEmpty();
+
+            ReflectionTestUtils.setField(controller, "bulkImportMaxRows", 3);
+            mockMvc.perform(post("/members/bulk").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.members").value(3));
+            assertThat(memberRepository.findByUsername("httpBulk3")).hasSize(1);
+
+            mockMvc.perform(post("/members/bulk").contentType(MediaType.APPLICATION_JSON).content("[{\"age\":\"x\"}]"))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            ReflectionTestUtils.setField(controller, "bulkImportMaxRows", maxRows);
+            for (String username : List.of("httpBulk1", "httpBulk2", "httpBulk3")) {
+                memberRepository.deleteAllInBatch(memberRepository.findByUsername(username));
+            }
+        }
+    }
+}
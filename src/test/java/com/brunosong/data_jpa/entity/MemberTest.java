@@ -2,13 +2,28 @@ package com.brunosong.data_jpa.entity;
 
 import com.brunosong.data_jpa.repository.MemberRepository;
 import com.brunosong.data_jpa.repository.TeamRepository;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 
 @SpringBootTest
@@ -25,6 +40,9 @@ public class MemberTest {
     @Autowired
     EntityManager em;
 
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
     @Test
     void 멤버엔티티_test() {
 
@@ -73,6 +91,87 @@ public class MemberTest {
     }
 
 
+    @Test
+    void 팀_회원수_컬렉션_로딩없이() {
+
+        //given
+        Team team = teamRepository.save(new Team("extraLazy"));
+        for (int i = 0; i < 3; i++) {
+            memberRepository.save(new Member("extraLazy" + i, 10, team));
+        }
+        em.flush();
+        em.clear();
+
+        //when  팀 이동 (다른 회원들은 로딩하지 않는다)
+        Team findTeam = teamRepository.findById(team.getId()).get();
+        Member newMember = memberRepository.save(new Member("extraLazyNew", 10));
+        newMember.changeTeam(findTeam);
+
+        //then
+        assertThat(Hibernate.isInitialized(findTeam.getMembers())).isFalse();
+        assertThat(findTeam.getMemberCount()).isEqualTo(4);
+
+        em.flush();
+        assertThat(findTeam.getMembers().size()).isEqualTo(4);           // select count
+        assertThat(findTeam.getMembers().contains(newMember)).isTrue();   // 한건 조회
+        assertThat(Hibernate.isInitialized(findTeam.getMembers())).isFalse();
+
+        assertThat(memberRepository.countByTeam(findTeam)).isEqualTo(4);
+        assertThat(memberRepository.existsByIdAndTeam(newMember.getId(), findTeam)).isTrue();
+        assertThat(memberRepository.findSliceByTeam(findTeam, PageRequest.of(0, 3)).hasNext()).isTrue();
+
+        // 다른 팀으로 옮기거나 삭제하면 줄어든다.
+        Team other = teamRepository.save(new Team("extraLazyOther"));
+        newMember.changeTeam(other);
+        memberRepository.delete(memberRepository.findListByUsername("extraLazy0").get(0));
+        em.flush();
+        em.clear();
+
+        assertThat(teamRepository.findById(team.getId()).get().getMemberCount()).isEqualTo(2);
+        assertThat(teamRepository.findById(other.getId()).get().getMemberCount()).isEqualTo(1);
+    }
+
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)   // 트랜잭션 여러개가 동시에 커밋해야 해서 테스트 트랜잭션을 쓰지 않는다.
+    void 팀_회원수_동시_등록() throws Exception {
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Team team = tx.execute(status -> teamRepository.save(new Team("concurrentCount")));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Long> memberIds = Collections.synchronizedList(new ArrayList<>());
+
+        try {
+            //when  스레드 4개가 트랜잭션 10번씩 같은 팀에 회원을 넣는다. (팀을 각자 읽어서 넣는다)
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        String username = "concurrentCount" + thread + "_" + i;
+                        memberIds.add(tx.execute(status -> memberRepository.save(
+                                new Member(username, 10, teamRepository.findById(team.getId()).get())).getId()));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();   // OptimisticLockException 이 나면 여기서 터진다.
+            }
+
+            //then  잃어버린 값 없이 40, 팀 version 은 그대로
+            Team findTeam = tx.execute(status -> teamRepository.findById(team.getId()).get());
+            assertThat(findTeam.getMemberCount()).isEqualTo(40);
+            assertThat(findTeam.getVersion()).isEqualTo(team.getVersion());
+        } finally {
+            executor.shutdown();
+            tx.executeWithoutResult(status -> {
+                memberRepository.deleteAllByIdInBatch(memberIds);
+                teamRepository.deleteAllByIdInBatch(List.of(team.getId()));
+            });
+        }
+    }
+
+
     @Test
     public void JpaEvenBaseEntity() throws InterruptedException {
 
@@ -97,4 +196,52 @@ public class MemberTest {
     }
 
 
+    @Test
+    public void auditing() {
+
+        //given  같은 트랜잭션에서 저장한 엔티티는 작성자와 시간을 한번만 구해서 같이 쓴다.
+        Member member1 = memberRepository.save(new Member("auditMember1"));
+        Member member2 = memberRepository.save(new Member("auditMember2"));
+
+        //then
+        assertThat(member1.getCreateDate()).isNotNull();
+        assertThat(member1.getCreatedBy()).isNotNull();
+        assertThat(member1.getLastModifiedDate()).isEqualTo(member1.getCreateDate());
+        assertThat(member2.getCreateDate()).isEqualTo(member1.getCreateDate());
+        assertThat(member2.getCreatedBy()).isEqualTo(member1.getCreatedBy());
+
+        //when
+        member1.setUsername("auditMember1_modified");
+        em.flush();   //@PreUpdate
+
+        //then
+        assertThat(member1.getLastModifiedDate()).isEqualTo(member1.getCreateDate());
+        assertThat(member1.getLastModifyBy()).isEqualTo(member1.getCreatedBy());
+    }
+
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void id_블록_미리받기() throws Exception {
+
+        //given  member_seq 는 100개씩, 블록 절반을 쓰면 다음 블록을 백그라운드에서 받는다. (application.yml)
+        ConfigurableSequenceGenerator generator = (ConfigurableSequenceGenerator) em.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class).getIdentifierGenerator(Member.class.getName());
+        long before = generator.prefetchedBlocks();
+        List<Long> ids = new ArrayList<>();
+
+        try {
+            //when  한건씩 넣으면서 미리 받을 시간을 준다. 블록 경계는 100건 안에 한번은 넘는다.
+            for (int i = 0; i < 250 && generator.prefetchedBlocks() == before; i++) {
+                ids.add(memberRepository.save(new Member("idBlock" + i, i)).getId());
+                Thread.sleep(5);
+            }
+
+            //then  다음 블록을 직접 조회하지 않고 미리 받아둔 값으로 넘어갔다.
+            assertThat(generator.prefetchedBlocks()).isGreaterThan(before);
+            assertThat(new HashSet<>(ids)).hasSize(ids.size());
+        } finally {
+            memberRepository.deleteAllByIdInBatch(ids);
+        }
+    }
 }
@@ -0,0 +1,39 @@
+package com.brunosong.data_jpa.monitor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexAdvisorTest {
+
+    @Test
+    void 같다_조건을_먼저_범위_조건은_뒤에() {
+
+        String sql = "select member0_.member_id from member member0_" +
+                " where member0_.age>10 and member0_.username='a' order by member0_.created_by";
+        String plan = "SELECT \"MEMBER0_\".\"MEMBER_ID\" FROM \"PUBLIC\".\"MEMBER\" \"MEMBER0_\" /* PUBLIC.MEMBER.tableScan */";
+
+        assertThat(IndexAdvisor.suggest(sql, plan))
+                .containsExactly("create index idx_member_username_age on member (username, age)");
+    }
+
+    @Test
+    void 인덱스를_타면_제안_없음() {
+
+        String sql = "select member0_.member_id from member member0_ where member0_.username='a'";
+        String plan = "SELECT ... /* PUBLIC.IDX_MEMBER_USERNAME_AGE: USERNAME = 'a' */";
+
+        assertThat(IndexAdvisor.isTableScan(plan)).isFalse();
+        assertThat(IndexAdvisor.suggest(sql, plan)).isEmpty();
+    }
+
+    @Test
+    void 풀스캔한_테이블만() {
+
+        String sql = "select member0_.member_id from member member0_ left outer join team team1_" +
+                " on member0_.team_id=team1_.team_id where team1_.name='teamA' and member0_.age=10";
+        String plan = "Hash Join\n  ->  Seq Scan on team team1_\n  ->  Index Scan using idx_member_age_username_id on member member0_";
+
+        assertThat(IndexAdvisor.suggest(sql, plan)).containsExactly("create index idx_team_name on team (name)");
+    }
+}
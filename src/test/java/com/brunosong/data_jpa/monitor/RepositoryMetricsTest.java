@@ -0,0 +1,65 @@
+package com.brunosong.data_jpa.monitor;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class RepositoryMetricsTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    RepositoryMetricsEndpoint repositoryMetricsEndpoint;
+
+    @Test
+    void 리포지토리_메소드별_측정() {
+
+        //given
+        memberRepository.save(new Member("metricsA", 10));
+        memberRepository.save(new Member("metricsB", 10));
+
+        //when  프래그먼트 / 쿼리 메소드 / @Query
+        memberRepository.findByNames(Arrays.asList("metricsA", "metricsB"));
+        memberRepository.findListByUsername("metricsA");
+        memberRepository.findUser("metricsA", 10);
+
+        //then
+        assertThat(invocations("findByNames")).isGreaterThanOrEqualTo(1);
+        assertThat(invocations("findListByUsername")).isGreaterThanOrEqualTo(1);
+        assertThat(invocations("findUser")).isGreaterThanOrEqualTo(1);
+
+        DistributionSummary resultSize = meterRegistry.find(RepositoryResultSizeInterceptor.METRIC_NAME)
+                .tag("repository", "MemberRepository")
+                .tag("method", "findByNames")
+                .summary();
+        assertThat(resultSize).isNotNull();
+        assertThat(resultSize.max()).isGreaterThanOrEqualTo(2);
+
+        List<Map<String, Object>> summary = repositoryMetricsEndpoint.repositories();
+        assertThat(summary).extracting(m -> m.get("method")).contains("findByNames", "findListByUsername", "findUser");
+    }
+
+    private long invocations(String method) {
+        return meterRegistry.find(RepositoryMetricsEndpoint.INVOCATIONS)
+                .tag("repository", "MemberRepository")
+                .tag("method", method)
+                .timers().stream().mapToLong(t -> t.count()).sum();
+    }
+}
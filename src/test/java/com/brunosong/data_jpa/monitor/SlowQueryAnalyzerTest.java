@@ -0,0 +1,106 @@
+package com.brunosong.data_jpa.monitor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p6spy.engine.common.PreparedStatementInformation;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class SlowQueryAnalyzerTest {
+
+    @Autowired
+    SlowQueryAnalyzer slowQueryAnalyzer;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void 인덱스가_없으면_풀스캔_제안() throws Exception {
+
+        String sql = "select member0_.member_id as member_i1_0_ from member member0_ where member0_.created_by=?";
+        slowQueryAnalyzer.submit(sql, List.of("nobody"), 500_000_000L, "MemberRepository.findByCreatedBy");
+
+        SlowQueryReport report = await(sql);
+        System.out.println(report.getPlan());
+        assertThat(report.isTableScan()).isTrue();
+        assertThat(report.getRepositoryMethods()).containsExactly("MemberRepository.findByCreatedBy");
+        assertThat(report.getSuggestions()).containsExactly("create index idx_member_created_by on member (created_by)");
+    }
+
+    @Test
+    void 리포지토리_쿼리는_인덱스를_탄다() throws Exception {
+
+        // findByUsernameAndAgeGreaterThan, findFirstByName 이 만드는 SQL
+        String member = "select member0_.member_id as member_i1_0_ from member member0_ where member0_.username=? and member0_.age>?";
+        String team = "select team0_.team_id as team_id1_1_ from team team0_ where team0_.name=? limit ?";
+        slowQueryAnalyzer.submit(member, List.of("a", 10), 500_000_000L, null);
+        slowQueryAnalyzer.submit(team, List.of("teamA", 1), 500_000_000L, null);
+
+        System.out.println(await(member).getPlan());
+        System.out.println(await(team).getPlan());
+        assertThat(await(member).isTableScan()).isFalse();
+        assertThat(await(team).isTableScan()).isFalse();
+    }
+
+    @Test
+    void EXPLAIN_은_값을_바인딩한다() throws Exception {
+
+        // 값이 들어간 SQL 문자열은 실행하지 않는다. 이스케이프가 깨진 값이 있어도 바인딩이라 그대로 값으로 들어간다.
+        String sql = "select member0_.member_id as member_i1_0_ from member member0_ where member0_.last_modify_by=?";
+        String value = "x\\' or 1=1; drop table member; --";
+        slowQueryAnalyzer.submit(sql, List.of(value), 500_000_000L, null);
+
+        SlowQueryReport report = await(sql);
+        assertThat(report.getPlan()).doesNotStartWith("EXPLAIN 실패");
+        assertThat(report.isTableScan()).isTrue();
+    }
+
+    @Test
+    void 리포트에는_바인딩_값이_없다() throws Exception {
+
+        String sql = "select member0_.member_id as member_i1_0_ from member member0_ where member0_.username=? and member0_.created_by=?";
+        slowQueryAnalyzer.submit(sql, List.of("secret-user", "secret-auditor"), 500_000_000L, null);
+
+        SlowQueryReport report = await(sql);
+        String json = objectMapper.writeValueAsString(report);
+        System.out.println(json);
+        assertThat(json).doesNotContain("secret-user", "secret-auditor");
+        assertThat(report.getParameterTypes()).containsExactly("String", "String");
+        assertThat(report.takeParameters()).isNull();
+    }
+
+    @Test
+    void 실행_계획의_문자열_값은_가린다() {
+
+        SlowQueryReport report = new SlowQueryReport("select 1 from member where username=?");
+        report.explained("Index Scan using idx on member  (cost=0.1..8.1)\n  Index Cond: ((username)::text = 'secret-user'::text)", List.of());
+
+        assertThat(report.getPlan()).doesNotContain("secret-user").contains("'?'::text");
+    }
+
+    @Test
+    void 바인딩_값_캡처() {
+
+        PreparedStatementInformation statement = new PreparedStatementInformation(null, "select 1 from member where username=? and age>?");
+        statement.setParameterValue(2, 10);
+        statement.setParameterValue(1, "a");
+
+        assertThat(SlowQueryListener.parameters(statement)).containsExactly("a", 10);
+    }
+
+    private SlowQueryReport await(String sql) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            for (SlowQueryReport report : slowQueryAnalyzer.getReports()) {
+                if (report.getSql().equals(sql) && report.getPlan() != null) {
+                    return report;
+                }
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("EXPLAIN 결과가 없습니다. : " + sql);
+    }
+}
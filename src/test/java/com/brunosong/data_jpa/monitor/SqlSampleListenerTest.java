@@ -0,0 +1,58 @@
+package com.brunosong.data_jpa.monitor;
+
+import com.p6spy.engine.common.ConnectionInformation;
+import com.p6spy.engine.common.StatementInformation;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlSampleListenerTest {
+
+    @Test
+    void 느린_SQL_과_에러는_항상_남긴다() {
+
+        SqlSampleListener listener = new SqlSampleListener(10, 0.0, Duration.ofMillis(100));
+
+        listener.onAfterAnyExecute(statement("select fast"), TimeUnit.MILLISECONDS.toNanos(1), null);
+        listener.onAfterAnyExecute(statement("select slow"), TimeUnit.MILLISECONDS.toNanos(150), null);
+        listener.onAfterAnyExecute(statement("select error"), TimeUnit.MILLISECONDS.toNanos(1), new SQLException("boom"));
+
+        assertThat(listener.samples(10, false)).extracting("sql").containsExactly("select error", "select slow");
+        assertThat(listener.samples(10, false).get(0).getError()).isEqualTo("boom");
+    }
+
+    @Test
+    void 샘플링() {
+
+        SqlSampleListener listener = new SqlSampleListener(10, 1.0, Duration.ofMillis(100));
+
+        listener.onAfterAnyExecute(statement("select fast"), TimeUnit.MILLISECONDS.toNanos(1), null);
+
+        assertThat(listener.samples(10, false)).extracting("sql").containsExactly("select fast");
+        assertThat(listener.samples(10, true)).isEmpty();
+    }
+
+    @Test
+    void 버퍼가_차면_오래된것부터_덮어쓴다() {
+
+        SqlSampleListener listener = new SqlSampleListener(3, 1.0, Duration.ofMillis(100));
+
+        for (int i = 0; i < 5; i++) {
+            listener.onAfterAnyExecute(statement("select " + i), 0, null);
+        }
+
+        assertThat(listener.getRecorded()).isEqualTo(5);
+        assertThat(listener.samples(10, false)).extracting("sql").containsExactly("select 4", "select 3", "select 2");
+        assertThat(listener.samples(2, false)).extracting("sql").containsExactly("select 4", "select 3");
+    }
+
+    private static StatementInformation statement(String sql) {
+        StatementInformation information = new StatementInformation(ConnectionInformation.fromTestConnection(null));
+        information.setStatementQuery(sql);
+        return information;
+    }
+}
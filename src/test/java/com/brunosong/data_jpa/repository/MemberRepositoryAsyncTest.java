@@ -0,0 +1,104 @@
+package com.brunosong.data_jpa.repository;
+
+import com.brunosong.data_jpa.config.AsyncConfig;
+import com.brunosong.data_jpa.entity.Member;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/* 비동기 메소드는 다른 스레드, 다른 트랜잭션에서 돌기 때문에 데이터를 먼저 커밋해둔다. (테스트 트랜잭션 X) */
+@SpringBootTest
+class MemberRepositoryAsyncTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationContext context;
+
+    @Autowired
+    @Qualifier(AsyncConfig.MEMBER_QUERY_EXECUTOR)
+    ThreadPoolTaskExecutor memberQueryExecutor;
+
+    @Test
+    void findAsync() throws Exception {
+
+        //given
+        Long id = new TransactionTemplate(transactionManager)
+                .execute(status -> memberRepository.save(new Member("asyncMember", 10)).getId());
+
+        try {
+            //when
+            List<Member> byUsername = memberRepository.findAsyncByUsername("asyncMember").get(5, TimeUnit.SECONDS);
+            Member byId = memberRepository.findAsyncById(id).get(5, TimeUnit.SECONDS);
+            Member notFound = memberRepository.findAsyncById(-1L).get(5, TimeUnit.SECONDS);
+
+            //then
+            assertThat(byUsername).extracting("id").containsExactly(id);
+            assertThat(byId.getUsername()).isEqualTo("asyncMember");
+            assertThat(notFound).isNull();
+        } finally {
+            memberRepository.deleteAllByIdInBatch(List.of(id));
+        }
+    }
+
+    @Test
+    void 부트_기본_실행기는_따로() {
+
+        //회원 조회 풀이 있어도 부트의 applicationTaskExecutor 는 그대로 만들어진다.
+        Executor applicationTaskExecutor = context.getBean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, Executor.class);
+        assertThat(applicationTaskExecutor).isNotSameAs(memberQueryExecutor);
+    }
+
+    @Test
+    void 실행기가_꽉_차면_거절() throws Exception {
+
+        // 스레드와 큐를 전부 막아둔다. 놀던 스레드가 큐에서 꺼내가면 자리가 생기니까 빈자리가 없을때까지 반복
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            do {
+                fillUntilRejected(release);
+                Thread.sleep(10);
+            } while (memberQueryExecutor.getThreadPoolExecutor().getQueue().remainingCapacity() > 0);
+
+            assertThatThrownBy(() -> memberRepository.findAsyncByUsername("asyncMember"))
+                    .isInstanceOf(TaskRejectedException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private void fillUntilRejected(CountDownLatch release) {
+        try {
+            while (true) {
+                memberQueryExecutor.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        } catch (TaskRejectedException e) {
+            // 꽉 찼다.
+        }
+    }
+}
@@ -1,22 +1,43 @@
 package com.brunosong.data_jpa.repository;
 
+import com.brunosong.data_jpa.dto.ChangeWatermark;
+import com.brunosong.data_jpa.dto.MemberChangeBatch;
+import com.brunosong.data_jpa.dto.MemberChangeDto;
+import com.brunosong.data_jpa.dto.MemberCursor;
 import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.dto.MemberSummary;
+import com.brunosong.data_jpa.dto.MemberTeamView;
+import com.brunosong.data_jpa.entity.AuditContext;
 import com.brunosong.data_jpa.entity.Member;
 import com.brunosong.data_jpa.entity.Team;
+import com.brunosong.data_jpa.monitor.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.*;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 @SpringBootTest
 @Transactional
@@ -34,6 +55,20 @@ class MemberRepositoryTest {
     @Autowired
     EntityManager em;
 
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    // 하이버네이트 통계는 기본으로 꺼져 있다. (application.yml) 캐시 hit / miss 를 보는 테스트가 있어서 여기서만 켠다.
+    @BeforeEach
+    void enableStatistics() {
+        em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics().setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void disableStatistics() {
+        em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics().setStatisticsEnabled(false);
+    }
+
     @Test
     void 멤버_DATAJPA_test() {
 
@@ -123,6 +158,34 @@ class MemberRepositoryTest {
     }
 
 
+    @Test
+    void streamMemberDto() {
+
+        Team team = new Team("streamTeam");
+        teamRepository.save(team);
+        repository.save(new Member("streamMember1", 10, team));
+        repository.save(new Member("streamMember2", 20));
+
+        em.flush();
+        em.clear();
+
+        List<MemberDto> result;
+        try (Stream<MemberDto> stream = repository.streamMemberDto(1)) {
+            result = stream.filter(dto -> dto.getUsername() != null && dto.getUsername().startsWith("streamMember"))
+                    .collect(Collectors.toList());
+        }
+
+        //left join 이라 팀이 없는 회원도 나와야 한다. 엔티티가 아니라서 영속성 컨텍스트에 아무것도 남지 않는다.
+        assertThat(result).extracting("username").containsExactly("streamMember1", "streamMember2");
+        assertThat(result).extracting("teamName").containsExactly("streamTeam", null);
+        assertThat(em.unwrap(org.hibernate.Session.class).getStatistics().getEntityCount()).isEqualTo(0);
+
+        try (Stream<String> usernames = repository.streamUsername()) {
+            assertThat(usernames.filter("streamMember2"::equals).count()).isEqualTo(1);
+        }
+    }
+
+
     @Test
     void findByNames() {
 
@@ -146,6 +209,51 @@ class MemberRepositoryTest {
         }
     }
 
+    @Test
+    void findByNames_청크() {
+
+        //given  in 절 한번에 다 못 들어가는 개수 + 중복
+        repository.save(new Member("inChunkFirst", 10));
+        repository.save(new Member("inChunkLast", 10));
+
+        List<String> names = new ArrayList<>();
+        names.add("inChunkFirst");
+        for (int i = 0; i < 1200; i++) {
+            names.add("inChunkNone" + i);
+        }
+        names.add("inChunkLast");
+        names.add("inChunkFirst");
+        em.flush();
+
+        //when
+        List<Member> result;
+        try (QueryCounter.Scope scope = QueryCounter.open("findByNames")) {
+            result = repository.findByNames(names);
+
+            //then  중복 빼고 1202 개 -> 512 + 512 + 178
+            assertThat(scope.count()).isEqualTo(3);
+        }
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("inChunkFirst", "inChunkLast");
+    }
+
+    @Test
+    void findByNames_패딩() {
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        repository.findByNames(Arrays.asList("a", "b", "c", "d", "e"));   // 8개로 채워진다.
+
+        long hit = statistics.getQueryPlanCacheHitCount();
+        long miss = statistics.getQueryPlanCacheMissCount();
+
+        // 5 ~ 8 개는 모두 8개짜리 같은 SQL 이라서 쿼리 계획을 다시 만들지 않는다.
+        repository.findByNames(Arrays.asList("a", "b", "c", "d", "e", "f"));
+        repository.findByNames(Arrays.asList("a", "b", "c", "d", "e", "f", "g"));
+        repository.findByNames(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h"));
+
+        assertThat(statistics.getQueryPlanCacheMissCount()).isEqualTo(miss);
+        assertThat(statistics.getQueryPlanCacheHitCount()).isGreaterThanOrEqualTo(hit + 3);
+    }
+
 
     @Test
     void returnTypeTest() {
@@ -204,6 +312,58 @@ class MemberRepositoryTest {
 
     }
 
+    @Test
+    public void dtoPaging() {
+
+        //given
+        Team team = new Team("dtoPageTeam");
+        teamRepository.save(team);
+        repository.save(new Member("dtoPage1", 10, team));
+        repository.save(new Member("dtoPage2", 10));
+
+        em.flush();
+        em.clear();
+
+        //when
+        Page<MemberDto> page = repository.findMemberDtoPage(PageRequest.of(0, 500, Sort.by(Sort.Direction.ASC, "username")));
+
+        //then  팀이 없는 회원도 나오고, 팀 이름은 추가 쿼리 없이 채워진다.
+        List<MemberDto> content = page.getContent().stream()
+                .filter(dto -> dto.getUsername().startsWith("dtoPage"))
+                .collect(Collectors.toList());
+        assertThat(content).extracting("username").containsExactly("dtoPage1", "dtoPage2");
+        assertThat(content).extracting("teamName").containsExactly("dtoPageTeam", null);
+        assertThat(page.getTotalElements()).isEqualTo(repository.count());
+    }
+
+    @Test
+    public void keysetPaging() {
+
+        //given
+        int age = 777;
+        repository.save(new Member("member1", age));
+        repository.save(new Member("member2", age));
+        repository.save(new Member("member3", age));
+        repository.save(new Member("member3", age));   // username 이 같아도 id 로 이어서 읽을수 있어야 한다.
+        repository.save(new Member("member4", age));
+
+        //when
+        Slice<Member> first = repository.findKeysetByAge(age, PageRequest.ofSize(3));
+        Member last = first.getContent().get(first.getContent().size() - 1);
+        Slice<Member> second = repository.findKeysetByAgeAfter(age, last.getUsername(), last.getId(), PageRequest.ofSize(3));
+
+        //then
+        assertThat(first.getContent()).extracting("username").containsExactly("member4", "member3", "member3");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting("username").containsExactly("member2", "member1");
+        assertThat(second.hasNext()).isFalse();
+
+        //커서는 인코딩 후 디코딩 해도 같은 위치를 가리켜야 한다.
+        MemberCursor cursor = MemberCursor.decode(MemberCursor.of(last).encode());
+        assertThat(cursor.getUsername()).isEqualTo(last.getUsername());
+        assertThat(cursor.getId()).isEqualTo(last.getId());
+    }
+
     @Test
     public void bulkUpdate() throws Exception {
 
@@ -241,6 +401,158 @@ class MemberRepositoryTest {
     }
 
 
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)   // 2차 캐시는 커밋이 되야 들어가서 트랜잭션을 직접 나눈다.
+    public void secondLevelCacheEvictedByBulkUpdate() {
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        int age = 1_000_000_000;   // 벌크 update 가 age 이상을 다 바꿔서 다른 테스트 데이터보다 크게 잡는다.
+
+        //given
+        Long id = tx.execute(status -> repository.save(new Member("cacheMember", age)).getId());
+
+        try {
+            //when  두번째 트랜잭션에서는 DB 를 가지 않고 2차 캐시에서 꺼낸다.
+            long hitBefore = statistics.getCacheRegionStatistics("member").getHitCount();
+            tx.executeWithoutResult(status -> repository.findById(id).get());
+            assertThat(statistics.getCacheRegionStatistics("member").getHitCount()).isEqualTo(hitBefore + 1);
+
+            LocalDateTime bulkTime = tx.execute(status -> {
+                repository.bulkAgePlus(age);
+                return AuditContext.current().now();
+            });
+
+            //then  벌크 연산으로 리전이 비워져서 캐시에 남아있던 예전 나이가 나오면 안된다.
+            Member findMember = tx.execute(status -> repository.findById(id).get());
+            assertThat(findMember.getAge()).isEqualTo(age + 1);
+            //수정 시각은 DB 시계가 아니라 그 트랜잭션의 AuditContext 시각 (DB 컬럼 정밀도 만큼 반올림 된다)
+            assertThat(findMember.getLastModifiedDate()).isCloseTo(bulkTime, within(1, ChronoUnit.MILLIS));
+            assertThat(findMember.getLastModifyBy()).isNotEqualTo(findMember.getCreatedBy());   // 수정자도 같이 바뀐다.
+        } finally {
+            repository.deleteAllByIdInBatch(List.of(id));
+        }
+    }
+
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)   // 컬렉션 캐시도 커밋이 되야 들어가서 트랜잭션을 직접 나눈다.
+    public void teamMembersCacheEvictedOnChangeTeam() {
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        //given  teamA 의 회원 목록을 컬렉션 캐시 (team.members) 에 올려둔다.
+        Long teamAId = tx.execute(status -> teamRepository.save(new Team("collCacheA")).getId());
+        Long teamBId = tx.execute(status -> teamRepository.save(new Team("collCacheB")).getId());
+        Long memberId = tx.execute(status -> repository.save(new Member("collCacheMember", 10, teamRepository.findById(teamAId).get())).getId());
+        //EXTRA 라서 size() 로는 로딩 (캐시) 되지 않는다. 돌면서 읽어야 캐시에 들어간다.
+        tx.executeWithoutResult(status -> assertThat(teamRepository.findById(teamAId).get().getMembers())
+                .extracting(Member::getId).containsExactly(memberId));
+
+        try {
+            //when  주인 쪽 (member.team) 만 바꾼다.
+            tx.executeWithoutResult(status -> repository.findById(memberId).get().changeTeam(teamRepository.findById(teamBId).get()));
+
+            //then  예전 팀의 캐시된 회원 목록에 남아있으면 안된다. (auto_evict_collection_cache)
+            tx.executeWithoutResult(status -> {
+                assertThat(teamRepository.findById(teamAId).get().getMembers()).extracting(Member::getId).isEmpty();
+                assertThat(teamRepository.findById(teamBId).get().getMembers())
+                        .extracting(Member::getId).containsExactly(memberId);
+            });
+        } finally {
+            tx.executeWithoutResult(status -> {
+                repository.deleteAllByIdInBatch(List.of(memberId));
+                teamRepository.deleteAllByIdInBatch(List.of(teamAId, teamBId));
+            });
+        }
+    }
+
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)   // 수정 시각은 트랜잭션마다 정해져서 트랜잭션을 직접 나눈다.
+    public void findChangesAfter_변경피드() {
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        ChangeWatermark start = new ChangeWatermark(LocalDateTime.now(), 0L);
+
+        //given
+        Long keptId = tx.execute(status -> repository.save(new Member("feedKept", 10)).getId());
+        Long deletedId = tx.execute(status -> repository.save(new Member("feedDeleted", 10)).getId());
+
+        try {
+            //when  하나는 수정, 하나는 삭제
+            tx.executeWithoutResult(status -> {
+                repository.findById(keptId).get().setUsername("feedKept2");
+                repository.deleteById(deletedId);
+            });
+
+            //then  한건씩 끊어 읽어도 워터마크로 이어서 전부 받는다.
+            LocalDateTime until = LocalDateTime.now().plusSeconds(1);
+            List<MemberChangeDto> changes = new ArrayList<>();
+            ChangeWatermark watermark = start;
+            MemberChangeBatch batch;
+            do {
+                ChangeWatermark from = watermark;
+                batch = tx.execute(status -> repository.findChangesAfter(from, until, 1));
+                assertThat(batch.getChanges()).hasSizeLessThanOrEqualTo(1);
+                changes.addAll(batch.getChanges());
+                watermark = batch.getNext();
+            } while (batch.isHasMore());
+
+            List<MemberChangeDto> mine = changes.stream()
+                    .filter(c -> c.getId().equals(keptId) || c.getId().equals(deletedId))
+                    .collect(Collectors.toList());
+            assertThat(mine).extracting(MemberChangeDto::getType)
+                    .containsExactly(MemberChangeDto.Type.UPSERT, MemberChangeDto.Type.DELETE);
+            assertThat(mine.get(0).getUsername()).isEqualTo("feedKept2");
+            assertThat(mine.get(1).getId()).isEqualTo(deletedId);
+
+            //다음 조회는 비어있고 워터마크도 그대로
+            ChangeWatermark last = watermark;
+            MemberChangeBatch empty = tx.execute(status -> repository.findChangesAfter(last, until, 10));
+            assertThat(empty.getChanges()).isEmpty();
+            assertThat(empty.getNext().encode()).isEqualTo(last.encode());
+        } finally {
+            tx.executeWithoutResult(status -> {
+                repository.deleteAllByIdInBatch(List.of(keptId, deletedId));
+                em.createQuery("delete from MemberTombstone t where t.memberId = :id")
+                        .setParameter("id", deletedId)
+                        .executeUpdate();
+            });
+        }
+    }
+
+
+    @Test
+    public void dynamicProjection() {
+
+        int age = 700_000;   // 다른 테스트 데이터와 겹치지 않는 나이 (벌크 테스트 대상 1_000_000_000 이상은 피한다)
+        Team team = teamRepository.save(new Team("projectionTeam"));
+        repository.save(new Member("projectionMember", age, team));
+        repository.save(new Member("projectionMember", age));   // 팀 없는 회원도 나와야 한다 (left join)
+        em.flush();
+        em.clear();
+
+        try (QueryCounter.Scope scope = QueryCounter.open("projection")) {
+            List<MemberTeamView> views = repository.findByUsername("projectionMember", MemberTeamView.class);
+            List<MemberDto> dtos = repository.findListByUsername("projectionMember", MemberDto.class);
+            Page<MemberSummary> page = repository.findByAge(age, PageRequest.of(0, 10), MemberSummary.class);
+
+            assertThat(views).extracting(MemberTeamView::getTeamName).containsExactlyInAnyOrder("projectionTeam", null);
+            assertThat(dtos).extracting(MemberDto::getTeamName).containsExactlyInAnyOrder("projectionTeam", null);
+            assertThat(page.getTotalElements()).isEqualTo(2);
+            assertThat(page.getContent()).extracting(MemberSummary::getAge).containsOnly(age);
+
+            //프로젝션 컬럼만 select 한다.
+            String viewSql = scope.repeatedStatements(1).keySet().iterator().next();
+            assertThat(viewSql).contains("username").contains("name").doesNotContain("age").doesNotContain("member_id as");
+        }
+
+        //영속성 컨텍스트에 올라간 엔티티가 없다.
+        assertThat(em.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+
     @Test
     public void findMemberLazy() {
 
@@ -279,6 +591,96 @@ class MemberRepositoryTest {
 
 
 
+    @Test
+    public void detectNPlusOne() {
+
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        teamRepository.save(teamA);
+        teamRepository.save(teamB);
+        repository.save(new Member("nPlusOne1", 10, teamA));
+        repository.save(new Member("nPlusOne2", 20, teamB));
+
+        em.flush();
+        em.clear();
+
+        //when  지연로딩은 회원마다 팀 select 가 한번씩 더 나간다.
+        try (QueryCounter.Scope scope = QueryCounter.open("lazy")) {
+            for (String username : Arrays.asList("nPlusOne1", "nPlusOne2")) {
+                repository.findMemberByUsername(username).getTeam().getName();
+            }
+            //회원 select 2번 + 팀 select 2번. 반복된 회원 select 만으로 통과하지 않게 팀 select 를 따로 본다.
+            assertThat(scope.count()).isEqualTo(4);
+            assertThat(scope.repeatedStatements(2))
+                    .hasEntrySatisfying(teamSelect(scope), times -> assertThat(times).isEqualTo(2));
+        }
+
+        em.clear();
+
+        //then  fetch join 은 팀까지 쿼리 한번이면 끝난다.
+        try (QueryCounter.Scope scope = QueryCounter.open("fetchJoin")) {
+            for (Member member : repository.findMemberFetchJoin()) {
+                if (member.getTeam() != null) {
+                    member.getTeam().getName();
+                }
+            }
+            scope.assertAtMost(1);
+        }
+    }
+
+    private static String teamSelect(QueryCounter.Scope scope) {
+        return scope.repeatedStatements(1).keySet().stream()
+                .filter(sql -> sql.contains(" from team ") && !sql.contains(" join "))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("팀 select 가 없습니다."));
+    }
+
+
+    @Test
+    public void batchFetchLazyAssociations() {
+
+        //given  팀 5개, 팀마다 회원 2명
+        List<Long> teamIds = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Team team = teamRepository.save(new Team("batchTeam" + i));
+            teamIds.add(team.getId());
+            for (int j = 0; j < 2; j++) {
+                String username = "batchMember" + i + "_" + j;
+                repository.save(new Member(username, 10, team));
+                usernames.add(username);
+            }
+        }
+
+        em.flush();
+        em.clear();
+
+        //when & then  회원 조회 1번 + 팀 프록시 초기화 1번 (팀 5개 < default_batch_fetch_size)
+        try (QueryCounter.Scope scope = QueryCounter.open("member.team")) {
+            for (Member member : repository.findByNames(usernames)) {
+                member.getTeam().getName();
+            }
+            scope.assertAtMost(2);
+        }
+
+        em.clear();
+
+        //팀 조회 1번 + members 컬렉션 초기화 1번 (팀 5개 < @BatchSize(20))
+        //size() 는 EXTRA 지연로딩이라 초기화 없이 count 쿼리가 나가서, 반복문으로 초기화 시킨다.
+        try (QueryCounter.Scope scope = QueryCounter.open("team.members")) {
+            int count = 0;
+            for (Team team : teamRepository.findAllById(teamIds)) {
+                for (Member member : team.getMembers()) {
+                    count++;
+                }
+            }
+            assertThat(count).isEqualTo(10);
+            scope.assertAtMost(2);
+        }
+    }
+
+
     @Test
     public void queryHint() throws Exception {
 
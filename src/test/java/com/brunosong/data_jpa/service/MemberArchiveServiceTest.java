@@ -0,0 +1,92 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.entity.MemberArchive;
+import com.brunosong.data_jpa.entity.Team;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.repository.TeamRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* 배치마다 커밋이 되야 해서 테스트 트랜잭션을 쓰지 않는다. */
+@SpringBootTest
+class MemberArchiveServiceTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void archiveModifiedBefore_보관() {
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        MemberArchiveService service = new MemberArchiveService(em, transactionManager, false, Duration.ofDays(1), 1);
+
+        //given  오래된 회원 2명 (수정 시각을 직접 과거로) + 최근 회원 1명
+        List<Long> ids = tx.execute(status -> {
+            Team team = teamRepository.save(new Team("archiveTeam"));
+            Long old1 = memberRepository.save(new Member("archiveOld1", 10, team)).getId();
+            Long old2 = memberRepository.save(new Member("archiveOld2", 20)).getId();
+            Long recent = memberRepository.save(new Member("archiveRecent", 30, team)).getId();
+            return List.of(old1, old2, recent, team.getId());
+        });
+        tx.executeWithoutResult(status -> em.createNativeQuery(
+                        "update member set last_modified_date = ? where member_id in (?, ?)")
+                .setParameter(1, Timestamp.valueOf(LocalDateTime.of(2000, 1, 1, 0, 0)))
+                .setParameter(2, ids.get(0))
+                .setParameter(3, ids.get(1))
+                .executeUpdate());
+
+        try {
+            //when  한건씩 배치
+            long archived = service.archiveModifiedBefore(LocalDateTime.now().minusDays(1));
+
+            //then  active 테이블에서는 빠지고 보관 테이블에서 (읽기 전용으로) 찾는다.
+            assertThat(archived).isEqualTo(2);
+            tx.executeWithoutResult(status -> {
+                assertThat(memberRepository.existsById(ids.get(0))).isFalse();
+                assertThat(memberRepository.findById(ids.get(0))).isEmpty();
+
+                MemberArchive old = memberRepository.findArchivedById(ids.get(0)).get();
+                assertThat(old.getUsername()).isEqualTo("archiveOld1");
+                assertThat(old.getTeamId()).isEqualTo(ids.get(3));
+                assertThat(old.getArchivedDate()).isNotNull();
+
+                assertThat(memberRepository.findArchivedById(ids.get(1)).get().getTeamId()).isNull();
+                assertThat(memberRepository.findArchivedById(ids.get(2))).isEmpty();
+
+                // 팀 인원수에서 보관된 회원이 빠진다. (members 컬렉션, countByTeam 과 같은 값)
+                Team team = teamRepository.findById(ids.get(3)).get();
+                assertThat(team.getMemberCount()).isEqualTo(1);
+                assertThat(memberRepository.countByTeam(team)).isEqualTo(1);
+            });
+
+            assertThat(memberRepository.findArchivedById(Long.MAX_VALUE)).isEmpty();
+        } finally {
+            tx.executeWithoutResult(status -> em.createQuery("delete from MemberArchive a where a.id in :ids")
+                    .setParameter("ids", ids.subList(0, 2))
+                    .executeUpdate());
+            memberRepository.deleteAllByIdInBatch(List.of(ids.get(2)));
+            teamRepository.deleteAllByIdInBatch(List.of(ids.get(3)));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.dto.BulkImportResult;
+import com.brunosong.data_jpa.dto.MemberImportDto;
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.repository.TeamRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberBulkImportServiceTest {
+
+    @Autowired
+    MemberBulkImportService memberBulkImportService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void importMembers() {
+
+        //given  배치 사이즈(100) 보다 많이 넣어서 중간 flush / clear 를 거치게 한다.
+        List<MemberImportDto> rows = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            rows.add(new MemberImportDto("bulk" + i, i, i % 2 == 0 ? "bulkTeamA" : "bulkTeamB"));
+        }
+
+        //when
+        BulkImportResult result = memberBulkImportService.importMembers(rows);
+
+        //then
+        assertThat(result.getMembers()).isEqualTo(250);
+        assertThat(result.getTeams()).isEqualTo(2);
+
+        Member member = memberRepository.findByUsername("bulk249").get(0);
+        assertThat(member.getAge()).isEqualTo(249);
+        assertThat(member.getTeam().getName()).isEqualTo("bulkTeamB");
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void importMembers_배치마다_커밋() {
+
+        //given  2건씩 커밋
+        MemberBulkImportService service = new MemberBulkImportService(memberRepository, teamRepository, em, transactionManager, 2);
+        List<MemberImportDto> rows = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            names.add("batchImport" + i);
+            rows.add(new MemberImportDto(names.get(i), 3_000_000 + i, null));
+        }
+
+        //when
+        BulkImportResult result = service.importMembers(rows);
+
+        //then  배치마다 트랜잭션이 달라서 수정 시각도 배치마다 다르다. (변경 피드가 긴 트랜잭션을 놓치지 않게)
+        List<Member> members = memberRepository.findByNames(names);
+        try {
+            assertThat(result.getMembers()).isEqualTo(5);
+            assertThat(members).hasSize(5);
+            assertThat(members.stream().map(Member::getLastModifiedDate).distinct()).hasSize(3);
+        } finally {
+            memberRepository.deleteAllByIdInBatch(members.stream().map(Member::getId).collect(Collectors.toList()));
+        }
+    }
+}
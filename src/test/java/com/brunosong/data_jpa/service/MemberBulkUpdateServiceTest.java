@@ -0,0 +1,87 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.dto.BulkUpdateResult;
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* 청크마다 커밋이 되야 해서 테스트 트랜잭션을 쓰지 않는다. */
+@SpringBootTest
+class MemberBulkUpdateServiceTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void bulkAgePlus_청크() {
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        MemberBulkUpdateService service = new MemberBulkUpdateService(em, emf, transactionManager,
+                () -> Optional.of("bulkUpdater"), 2, Duration.ZERO);
+        int age = 2_000_000;   // 다른 테스트 데이터와 겹치지 않는 나이
+
+        //given  대상 5명 + 대상이 아닌 1명
+        List<Long> ids = tx.execute(status -> {
+            List<Long> result = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                result.add(memberRepository.save(new Member("chunkMember" + i, age + i)).getId());
+            }
+            return result;
+        });
+        Long untouchedId = tx.execute(status -> memberRepository.save(new Member("chunkUntouched", age - 1)).getId());
+
+        try {
+            //when
+            List<BulkUpdateResult> progress = new ArrayList<>();
+            tx.executeWithoutResult(status -> {
+                Member managed = memberRepository.findById(ids.get(0)).get();
+                Member untouched = memberRepository.findById(untouchedId).get();
+
+                BulkUpdateResult result = service.bulkAgePlus(age, progress::add);
+
+                //then  바뀐 회원만 영속성 컨텍스트에서 빠지고 나머지는 그대로 남는다. (clear X)
+                assertThat(result.getAffectedRows()).isEqualTo(5);
+                assertThat(result.isCompleted()).isTrue();
+                assertThat(em.contains(managed)).isFalse();
+                assertThat(em.contains(untouched)).isTrue();
+            });
+
+            //then
+            assertThat(progress).hasSizeGreaterThanOrEqualTo(3);   // 2개씩 5명
+            assertThat(progress.get(progress.size() - 1).getAffectedRows()).isEqualTo(5);
+            assertThat(emf.getCache().contains(Member.class, ids.get(0))).isFalse();
+            assertThat(emf.getCache().contains(Member.class, untouchedId)).isTrue();
+
+            Member updated = tx.execute(status -> memberRepository.findById(ids.get(0)).get());
+            assertThat(updated.getAge()).isEqualTo(age + 1);
+            assertThat(updated.getLastModifyBy()).isEqualTo("bulkUpdater");
+            assertThat(updated.getLastModifiedDate()).isAfterOrEqualTo(updated.getCreateDate());
+        } finally {
+            List<Long> created = new ArrayList<>(ids);
+            created.add(untouchedId);
+            memberRepository.deleteAllByIdInBatch(created);
+        }
+    }
+}
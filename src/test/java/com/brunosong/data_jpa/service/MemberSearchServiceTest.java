@@ -0,0 +1,110 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.dto.MemberDto;
+import com.brunosong.data_jpa.dto.MemberSearchCondition;
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.entity.Team;
+import com.brunosong.data_jpa.monitor.QueryCounter;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import com.brunosong.data_jpa.repository.TeamRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* 검색 결과 캐시는 커밋된 데이터로 봐야 해서 테스트 트랜잭션을 쓰지 않는다. */
+@SpringBootTest
+class MemberSearchServiceTest {
+
+    @Autowired
+    MemberSearchService memberSearchService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    // 하이버네이트 통계는 기본으로 꺼져 있다. (application.yml) 쿼리 계획 캐시 miss 를 봐야 해서 켠다.
+    @BeforeEach
+    void enableStatistics() {
+        emf.unwrap(SessionFactory.class).getStatistics().setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void disableStatistics() {
+        emf.unwrap(SessionFactory.class).getStatistics().setStatisticsEnabled(false);
+    }
+
+    @Test
+    void search_정규화_캐시() {
+
+        int age = 800_000;   // 다른 테스트 데이터와 겹치지 않는 나이
+        List<Long> memberIds = new ArrayList<>();
+        Team team = new TransactionTemplate(transactionManager).execute(status -> {
+            Team saved = teamRepository.save(new Team("searchTeam"));
+            for (int i = 1; i <= 3; i++) {
+                memberIds.add(memberRepository.save(new Member("searchUser" + i, age + i, saved)).getId());
+            }
+            memberIds.add(memberRepository.save(new Member("searchUser9", age + 1)).getId());   // 팀 없음
+            return saved;
+        });
+
+        try {
+            PageRequest pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "age"));
+
+            //when  공백, 뒤집힌 나이 범위는 정규화 된다.
+            Page<MemberDto> page = memberSearchService.search(
+                    new MemberSearchCondition(" searchUser ", age + 2, age + 1, " searchTeam "), pageable);
+
+            //then
+            assertThat(page.getTotalElements()).isEqualTo(2);
+            assertThat(page.getContent()).extracting(MemberDto::getUsername).containsExactly("searchUser2", "searchUser1");
+            assertThat(page.getContent()).extracting(MemberDto::getTeamName).containsOnly("searchTeam");
+
+            //같은 뜻의 검색은 캐시에서 나온다. (쿼리 X)
+            try (QueryCounter.Scope scope = QueryCounter.open("cached")) {
+                Page<MemberDto> cached = memberSearchService.search(
+                        new MemberSearchCondition("searchUser", age + 1, age + 2, "searchTeam"), pageable);
+                assertThat(cached.getContent()).hasSize(2);
+                assertThat(scope.count()).isZero();
+            }
+
+            //값만 다르고 조건 모양이 같으면 쿼리 계획을 다시 만들지 않는다.
+            Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+            long planMiss = statistics.getQueryPlanCacheMissCount();
+            Page<MemberDto> other = memberSearchService.search(
+                    new MemberSearchCondition("searchUser3", age, age + 3, "searchTeam"), pageable);
+            assertThat(other.getContent()).extracting(MemberDto::getUsername).containsExactly("searchUser3");
+            assertThat(statistics.getQueryPlanCacheMissCount()).isEqualTo(planMiss);
+
+            //like 특수문자는 글자 그대로 찾는다.
+            Page<MemberDto> escaped = memberSearchService.search(
+                    new MemberSearchCondition("search_ser", null, null, null), pageable);
+            assertThat(escaped.getTotalElements()).isZero();
+        } finally {
+            memberRepository.deleteAllByIdInBatch(memberIds);
+            teamRepository.deleteAllByIdInBatch(List.of(team.getId()));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.monitor.LockWaitMetrics;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberWorkQueueServiceTest {
+
+    @Autowired
+    MemberWorkQueueService workQueueService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    LockWaitMetrics lockWaitMetrics;
+
+    @Test
+    void claimMembers() {
+
+        //given  다른 데이터와 안 겹치게 음수 나이를 큐로 쓴다.
+        for (int i = 0; i < 5; i++) {
+            memberRepository.save(new Member("work" + i, -100));
+        }
+
+        //when
+        List<Member> claimed = memberRepository.claimMembers(-99, 3, -2);
+
+        //then
+        assertThat(claimed).hasSize(3);
+        assertThat(claimed).extracting("username").containsExactly("work0", "work1", "work2");
+    }
+
+    @Test
+    void process() {
+
+        //given
+        for (int i = 0; i < 5; i++) {
+            memberRepository.save(new Member("work" + i, -100));
+        }
+        long before = lockWaitMetrics.getAcquisitions();
+
+        //when  처리하면서 나이를 올리면 큐에서 빠진다.
+        List<String> processed = new ArrayList<>();
+        int first = workQueueService.process(-99, 3, m -> {
+            processed.add(m.getUsername());
+            m.setAge(0);
+        });
+        int second = workQueueService.process(-99, 3, m -> {
+            processed.add(m.getUsername());
+            m.setAge(0);
+        });
+
+        //then
+        assertThat(first).isEqualTo(3);
+        assertThat(second).isEqualTo(2);
+        assertThat(processed).containsExactly("work0", "work1", "work2", "work3", "work4");
+        assertThat(lockWaitMetrics.getAcquisitions() - before).isEqualTo(2);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void process_워커_두개() throws Exception {
+
+        //given  워커마다 트랜잭션이 따로라서 커밋해서 넣는다. 다른 테스트와 안 겹치게 -200
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(memberRepository.save(new Member("worker" + i, -200)).getId());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CyclicBarrier start = new CyclicBarrier(2);
+
+        try {
+            //when  두 워커가 동시에 2개씩 가져간다.
+            List<Future<List<Long>>> workers = new ArrayList<>();
+            for (int w = 0; w < 2; w++) {
+                workers.add(executor.submit(() -> {
+                    List<Long> processed = new ArrayList<>();
+                    start.await();
+                    workQueueService.process(-199, 2, m -> {
+                        processed.add(m.getId());
+                        m.setAge(0);
+                    });
+                    return processed;
+                }));
+            }
+            List<Long> first = workers.get(0).get(10, TimeUnit.SECONDS);
+            List<Long> second = workers.get(1).get(10, TimeUnit.SECONDS);
+
+            //then  서로 다른 행을 가져가서 겹치지 않고 전부 처리된다.
+            //     (H2 는 SKIP LOCKED 를 지원하지 않아서 하이버네이트가 그냥 for update 로 보낸다. 뒤 워커는 앞 워커 커밋을 기다렸다가 남은 행을 가져간다)
+            assertThat(first).hasSize(2).doesNotContainAnyElementsOf(second);
+            assertThat(second).hasSize(2);
+            List<Long> all = new ArrayList<>(first);
+            all.addAll(second);
+            assertThat(all).containsExactlyInAnyOrderElementsOf(ids);
+        } finally {
+            executor.shutdownNow();
+            memberRepository.deleteAllByIdInBatch(ids);
+        }
+    }
+}
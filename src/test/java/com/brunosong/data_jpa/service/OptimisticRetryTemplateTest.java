@@ -0,0 +1,92 @@
+package com.brunosong.data_jpa.service;
+
+import com.brunosong.data_jpa.entity.Member;
+import com.brunosong.data_jpa.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/* 재시도 할때마다 트랜잭션을 새로 커밋해야 해서 테스트 트랜잭션을 쓰지 않는다. */
+@SpringBootTest
+class OptimisticRetryTemplateTest {
+
+    @Autowired
+    OptimisticRetryTemplate retryTemplate;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void 충돌나면_다시_실행() {
+
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long id = tx.execute(status -> memberRepository.save(new Member("retryMember", 500_000)).getId());
+
+        try {
+            //when  첫번째 시도 중간에 다른 트랜잭션이 먼저 수정하고 커밋한다.
+            AtomicInteger attempts = new AtomicInteger();
+            retryTemplate.run(() -> {
+                Member member = memberRepository.findById(id).get();
+                if (attempts.incrementAndGet() == 1) {
+                    modifyInOtherTransaction(id, 100);
+                }
+                member.setAge(member.getAge() + 1);
+            });
+
+            //then
+            Member result = tx.execute(status -> memberRepository.findById(id).get());
+            assertThat(attempts.get()).isEqualTo(2);
+            assertThat(result.getAge()).isEqualTo(500_000 + 100 + 1);
+            assertThat(result.getVersion()).isEqualTo(2L);
+        } finally {
+            memberRepository.deleteAllByIdInBatch(List.of(id));
+        }
+    }
+
+    @Test
+    void 재시도_횟수_초과() {
+
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long id = tx.execute(status -> memberRepository.save(new Member("retryMember", 500_000)).getId());
+
+        try {
+            //when  매번 충돌
+            AtomicInteger attempts = new AtomicInteger();
+            assertThatThrownBy(() -> retryTemplate.run(() -> {
+                Member member = memberRepository.findById(id).get();
+                attempts.incrementAndGet();
+                modifyInOtherTransaction(id, 1);
+                member.setAge(0);
+            })).isInstanceOf(OptimisticLockingFailureException.class);
+
+            //then
+            assertThat(attempts.get()).isEqualTo(retryTemplate.getMaxAttempts());
+        } finally {
+            memberRepository.deleteAllByIdInBatch(List.of(id));
+        }
+    }
+
+    private void modifyInOtherTransaction(Long id, int plus) {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        requiresNew.executeWithoutResult(status -> {
+            Member member = memberRepository.findById(id).get();
+            member.setAge(member.getAge() + plus);
+        });
+    }
+}